@@ -0,0 +1,97 @@
+package chess;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Diagnostic measurement of heap allocations and garbage collection pauses during searches.
+ * Enabled by the system property chess.profileAllocations or by {@link #enable()}, disabled measurements cost nothing and return 0.
+ * Allocated bytes are counted per thread by the HotSpot thread bean, pauses are summed from garbage collection notifications.
+ * Notifications are delivered asynchronously, so a pause ending just before a search returns may be counted for the next search.
+ */
+public class AllocationProfiler {
+    private static final String PROPERTY = "chess.profileAllocations";
+    private static final AtomicLong gcPauseTime = new AtomicLong();
+    private static final AtomicLong gcCount = new AtomicLong();
+    private static com.sun.management.ThreadMXBean threadBean;
+    private static volatile boolean isEnabled;
+
+    static {
+        if (Boolean.getBoolean(PROPERTY)) enable();
+    }
+
+    /**
+     * Starts counting allocations and listening to garbage collections, does nothing when already enabled
+     * @return whether profiling is supported by this virtual machine
+     */
+    public static synchronized boolean enable() {
+        if (isEnabled) return true;
+
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (!(bean instanceof com.sun.management.ThreadMXBean) || !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            Logger.getLogger("global").log(Level.WARNING, "Thread allocation counting is not supported, allocation profiling disabled!");
+            return false;
+        }
+
+        threadBean = (com.sun.management.ThreadMXBean) bean;
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter) {
+                ((NotificationEmitter) collector).addNotificationListener((notification, handback) -> {
+                    if (notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+                        recordCollection(GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()));
+                    }
+                }, null, null);
+            }
+        }
+
+        isEnabled = true;
+
+        return true;
+    }
+
+    /**
+     * Concurrent cycles run beside the application threads and are not counted as pauses
+     */
+    private static void recordCollection(GarbageCollectionNotificationInfo info) {
+        if (info.getGcAction().contains("concurrent")) return;
+
+        gcPauseTime.addAndGet(info.getGcInfo().getDuration());
+        gcCount.incrementAndGet();
+    }
+
+    public static boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * @return bytes allocated by the current thread since it started, 0 when profiling is disabled
+     */
+    public static long currentThreadAllocatedBytes() {
+        return isEnabled ? threadBean.getCurrentThreadAllocatedBytes() : 0;
+    }
+
+    /**
+     * @return total duration of garbage collection pauses since profiling was enabled in milliseconds
+     */
+    public static long getGcPauseTime() {
+        return gcPauseTime.get();
+    }
+
+    /**
+     * @return number of garbage collection pauses since profiling was enabled
+     */
+    public static long getGcCount() {
+        return gcCount.get();
+    }
+}
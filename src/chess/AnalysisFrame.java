@@ -0,0 +1,450 @@
+package chess;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static javax.swing.BoxLayout.Y_AXIS;
+
+/**
+ * Analysis board: steps through the moves of a game, lets the user play other moves or set up a position from FEN,
+ * while a {@link BackgroundAnalysis} keeps searching the shown position.
+ * Search updates are coalesced, only the newest one is shown once the event dispatch thread gets to it.
+ */
+public class AnalysisFrame extends JFrame {
+    private static final int NO_SQUARE = ChessBoard.NO_SQUARE;
+    private JPanel[][] fields;
+    private JLabel[][] pieceLabels;
+    private EvaluationBar evaluationBar;
+    private JLabel evaluationLabel;
+    private JLabel depthLabel;
+    private JTextArea principalVariationArea;
+    private DefaultListModel<String> moveListModel;
+    private JList<String> moveList;
+    private final Map<String, Icon> icons;
+    private final BackgroundAnalysis analysis;
+    private final AtomicReference<Update> pendingUpdate;
+    private final List<Integer> moves;
+    private final int[] validMoves;
+    private ChessBoard startingBoard;
+    private ChessBoard board;
+    private int ply;
+    private int selectedSquare = NO_SQUARE;
+    private boolean isUpdatingMoveList;
+
+    /**
+     * @param startingBoard position before the first move, not changed
+     * @param moves encoded moves played from the starting position, the position after the last one is shown first
+     */
+    public AnalysisFrame(ChessBoard startingBoard, List<Integer> moves) {
+        this.startingBoard = new ChessBoard(startingBoard);
+        this.moves = new ArrayList<>(moves);
+        icons = new HashMap<>();
+        validMoves = new int[ChessBoard.MAX_MOVES];
+        pendingUpdate = new AtomicReference<>();
+        analysis = new BackgroundAnalysis(this::receiveUpdate);
+        configureFrame();
+        configureKeys();
+        pack();
+        setLocation();
+        goTo(this.moves.size());
+    }
+
+    private void configureFrame() {
+        setResizable(false);
+        setTitle("Analysis");
+        setIconImage(new ImageIcon("Images/icon.png").getImage());
+        setDefaultCloseOperation(EXIT_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                analysis.shutdown();
+            }
+        });
+
+        evaluationBar = new EvaluationBar();
+        evaluationBar.setPreferredSize(new Dimension(getSquareSize() / 3, 8 * getSquareSize()));
+
+        getContentPane().add(evaluationBar, BorderLayout.WEST);
+        getContentPane().add(createBoardPanel(), BorderLayout.CENTER);
+        getContentPane().add(createSidePanel(), BorderLayout.EAST);
+    }
+
+    private int getSquareSize() {
+        Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
+        return (int) (3 * screenSize.getHeight() / 5) / 8;
+    }
+
+    private JPanel createBoardPanel() {
+        JPanel boardPanel = new JPanel(new GridLayout(8, 8));
+        fields = new JPanel[8][8];
+        pieceLabels = new JLabel[8][8];
+
+        for (int row = 0; row < 8; row++) {
+            for (int column = 0; column < 8; column++) {
+                int square = Moves.square(row, column);
+
+                fields[row][column] = new JPanel(new BorderLayout());
+                fields[row][column].setPreferredSize(new Dimension(getSquareSize(), getSquareSize()));
+                fields[row][column].addMouseListener(new MouseAdapter() {
+                    @Override
+                    public void mousePressed(MouseEvent e) {
+                        if (SwingUtilities.isLeftMouseButton(e)) selectSquare(square);
+                    }
+                });
+
+                pieceLabels[row][column] = new JLabel();
+                pieceLabels[row][column].setHorizontalAlignment(JLabel.CENTER);
+                fields[row][column].add(pieceLabels[row][column]);
+                boardPanel.add(fields[row][column]);
+            }
+        }
+
+        return boardPanel;
+    }
+
+    private JPanel createSidePanel() {
+        JPanel panel = new JPanel();
+        panel.setLayout(new BoxLayout(panel, Y_AXIS));
+        panel.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+        panel.setPreferredSize(new Dimension(4 * getSquareSize(), 8 * getSquareSize()));
+
+        evaluationLabel = new JLabel(" ");
+        evaluationLabel.setFont(evaluationLabel.getFont().deriveFont(Font.BOLD, getSquareSize() / 3f));
+        depthLabel = new JLabel(" ");
+
+        principalVariationArea = new JTextArea(4, 20);
+        principalVariationArea.setEditable(false);
+        principalVariationArea.setFocusable(false);
+        principalVariationArea.setLineWrap(true);
+        principalVariationArea.setWrapStyleWord(true);
+
+        moveListModel = new DefaultListModel<>();
+        moveList = new JList<>(moveListModel);
+        moveList.setFocusable(false);
+        moveList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        moveList.addListSelectionListener(e -> {
+            if (!isUpdatingMoveList && !e.getValueIsAdjusting() && moveList.getSelectedIndex() >= 0) goTo(moveList.getSelectedIndex() + 1);
+        });
+
+        JPanel buttons = new JPanel(new GridLayout(1, 5));
+        buttons.add(createButton("|<", () -> goTo(0)));
+        buttons.add(createButton("<", () -> goTo(ply - 1)));
+        buttons.add(createButton(">", () -> goTo(ply + 1)));
+        buttons.add(createButton(">|", () -> goTo(moves.size())));
+        buttons.add(createButton("FEN", this::setUpPosition));
+
+        for (JComponent component : new JComponent[]{evaluationLabel, depthLabel, principalVariationArea, buttons}) {
+            component.setAlignmentX(Component.LEFT_ALIGNMENT);
+        }
+
+        JScrollPane moveScrollPane = new JScrollPane(moveList);
+        moveScrollPane.setAlignmentX(Component.LEFT_ALIGNMENT);
+        buttons.setMaximumSize(new Dimension(Integer.MAX_VALUE, buttons.getPreferredSize().height));
+
+        panel.add(evaluationLabel);
+        panel.add(depthLabel);
+        panel.add(Box.createVerticalStrut(8));
+        panel.add(principalVariationArea);
+        panel.add(Box.createVerticalStrut(8));
+        panel.add(moveScrollPane);
+        panel.add(Box.createVerticalStrut(8));
+        panel.add(buttons);
+
+        return panel;
+    }
+
+    private JButton createButton(String text, Runnable action) {
+        JButton button = new JButton(text);
+        button.setFocusable(false);
+        button.addActionListener(e -> action.run());
+
+        return button;
+    }
+
+    /**
+     * Arrow keys step through the moves, home and end jump to the first and last position
+     */
+    private void configureKeys() {
+        InputMap inputMap = getRootPane().getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
+        ActionMap actionMap = getRootPane().getActionMap();
+
+        bindKey(inputMap, actionMap, KeyEvent.VK_LEFT, () -> goTo(ply - 1));
+        bindKey(inputMap, actionMap, KeyEvent.VK_RIGHT, () -> goTo(ply + 1));
+        bindKey(inputMap, actionMap, KeyEvent.VK_HOME, () -> goTo(0));
+        bindKey(inputMap, actionMap, KeyEvent.VK_END, () -> goTo(moves.size()));
+    }
+
+    private void bindKey(InputMap inputMap, ActionMap actionMap, int keyCode, Runnable action) {
+        inputMap.put(KeyStroke.getKeyStroke(keyCode, 0), keyCode);
+        actionMap.put(keyCode, new AbstractAction() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                action.run();
+            }
+        });
+    }
+
+    private void setLocation() {
+        Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
+        setLocation((int) (screenSize.getWidth() - getWidth()) / 2, (int) (screenSize.getHeight() - getHeight()) / 2);
+    }
+
+    /**
+     * Shows the position after the given number of moves and starts analysing it
+     * @param ply number of moves made from the starting position, ignored when out of range
+     */
+    private void goTo(int ply) {
+        if (ply < 0 || ply > moves.size()) return;
+
+        this.ply = ply;
+        board = new ChessBoard(startingBoard);
+
+        for (int i = 0; i < ply; i++) {
+            board.makeMove(moves.get(i));
+        }
+
+        showPosition();
+    }
+
+    /**
+     * Plays a move in the shown position, replacing the moves that followed it
+     */
+    private void makeMove(int move) {
+        moves.subList(ply, moves.size()).clear();
+        moves.add(move);
+        ply++;
+        board.makeMove(move);
+        showPosition();
+    }
+
+    private void setUpPosition() {
+        String fen = JOptionPane.showInputDialog(this, "Position in FEN:", board.toFen());
+
+        if (fen == null) return;
+
+        try {
+            startingBoard = ChessBoard.fromFen(fen.trim());
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, "Invalid FEN!", "Position", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        moves.clear();
+        goTo(0);
+    }
+
+    private void showPosition() {
+        selectedSquare = NO_SQUARE;
+        drawPieces();
+        updateMoveList();
+        evaluationLabel.setText(" ");
+        depthLabel.setText(" ");
+        principalVariationArea.setText("");
+
+        if (board.cannotMove(board.getColorToMove())) {
+            analysis.stop();
+            boolean isCheckmate = board.isInCheck();
+            evaluationLabel.setText(isCheckmate ? "Checkmate" : "Stalemate");
+            evaluationBar.setEvaluation(!isCheckmate ? 0 : board.getColorToMove() == ChessBoard.ChessPiece.Color.WHITE ? -MiniMaxAdversary.MATE : MiniMaxAdversary.MATE);
+        } else {
+            analysis.analyse(board);
+        }
+    }
+
+    private void drawPieces() {
+        for (int row = 0; row < 8; row++) {
+            for (int column = 0; column < 8; column++) {
+                pieceLabels[row][column].setIcon(getIcon(board.getField(row, column).getChessPiece()));
+                setFieldBackground(row, column);
+            }
+        }
+    }
+
+    private void setFieldBackground(int row, int column) {
+        fields[row][column].setBackground((row + column) % 2 == 0 ? Colors.IVORY.getColor() : Colors.BROWN.getColor());
+    }
+
+    private Icon getIcon(ChessBoard.ChessPiece piece) {
+        String imagePath = piece.getImagePath();
+
+        if (imagePath.equals("NoPath")) return null;
+
+        return icons.computeIfAbsent(imagePath, path -> {
+            int size = 8 * getSquareSize() / 10;
+            return new ImageIcon(new ImageIcon(path).getImage().getScaledInstance(size, size, Image.SCALE_SMOOTH));
+        });
+    }
+
+    private void updateMoveList() {
+        isUpdatingMoveList = true;
+        moveListModel.clear();
+
+        ChessBoard position = new ChessBoard(startingBoard);
+        boolean isWhiteFirst = position.getColorToMove() == ChessBoard.ChessPiece.Color.WHITE;
+
+        for (int i = 0; i < moves.size(); i++) {
+            int moveNumber = (i + (isWhiteFirst ? 0 : 1)) / 2 + 1;
+            boolean isWhiteMove = position.getColorToMove() == ChessBoard.ChessPiece.Color.WHITE;
+
+            moveListModel.addElement(moveNumber + (isWhiteMove ? ". " : "... ") + Moves.toSan(position, moves.get(i)));
+            position.makeMove(moves.get(i));
+        }
+
+        if (ply > 0) {
+            moveList.setSelectedIndex(ply - 1);
+            moveList.ensureIndexIsVisible(ply - 1);
+        } else {
+            moveList.clearSelection();
+        }
+
+        isUpdatingMoveList = false;
+    }
+
+    /**
+     * Selects a piece of the side to move and shows its moves, or plays the move to the square if a piece is selected
+     */
+    private void selectSquare(int square) {
+        int move = findMove(selectedSquare, square);
+
+        if (move != Moves.NO_MOVE) {
+            makeMove(move);
+            return;
+        }
+
+        selectedSquare = board.getColor(square) == board.getColorToMove() && findMove(square, NO_SQUARE) != Moves.NO_MOVE ? square : NO_SQUARE;
+        drawPieces();
+
+        if (selectedSquare == NO_SQUARE) return;
+
+        fields[Moves.getRow(square)][Moves.getColumn(square)].setBackground(Colors.PINK.getColor());
+
+        int validMoveCount = board.generateMoves(validMoves);
+
+        for (int i = 0; i < validMoveCount; i++) {
+            if (Moves.getFrom(validMoves[i]) == square) {
+                int to = Moves.getTo(validMoves[i]);
+                fields[Moves.getRow(to)][Moves.getColumn(to)].setBackground(Colors.SCARLET.getColor());
+            }
+        }
+    }
+
+    /**
+     * @param to target square or NO_SQUARE for any move of the piece
+     * @return valid move between the squares or NO_MOVE
+     */
+    private int findMove(int from, int to) {
+        if (from == NO_SQUARE) return Moves.NO_MOVE;
+
+        int validMoveCount = board.generateMoves(validMoves);
+
+        for (int i = 0; i < validMoveCount; i++) {
+            if (Moves.getFrom(validMoves[i]) == from && (to == NO_SQUARE || Moves.getTo(validMoves[i]) == to)) return validMoves[i];
+        }
+
+        return Moves.NO_MOVE;
+    }
+
+    /**
+     * Called by search threads, keeps only the newest update and schedules showing it unless an update is already waiting
+     */
+    private void receiveUpdate(ChessBoard position, SearchStatistics statistics) {
+        if (pendingUpdate.getAndSet(new Update(position, statistics)) == null) {
+            EventQueue.invokeLater(this::showUpdate);
+        }
+    }
+
+    private void showUpdate() {
+        Update update = pendingUpdate.getAndSet(null);
+
+        if (update == null || update.position.getHash() != board.getHash()) return;
+
+        SearchStatistics statistics = update.statistics;
+
+        if (statistics.getSource().equals(SearchStatistics.TABLEBASE)) {
+            evaluationLabel.setText("Tablebase");
+            depthLabel.setText(" ");
+            principalVariationArea.setText(Moves.toSan(update.position, statistics.getBestMove()));
+            return;
+        }
+
+        if (statistics.getDepth() == 0) return;
+
+        evaluationBar.setEvaluation(statistics.getEvaluation());
+        evaluationLabel.setText(formatEvaluation(statistics.getEvaluation()));
+        depthLabel.setText(String.format(Locale.ROOT, "Depth %d/%d, %,d nodes, %,d nodes/s", statistics.getDepth(), statistics.getSelectiveDepth(),
+            statistics.getNodes(), statistics.getNodesPerSecond()));
+        principalVariationArea.setText(formatPrincipalVariation(update.position, statistics.getPrincipalVariation()));
+    }
+
+    /**
+     * @return evaluation in pawns from white perspective or the number of moves to mate, mate scores count plies from the searched position
+     */
+    private String formatEvaluation(int evaluation) {
+        if (Math.abs(evaluation) > MiniMaxAdversary.MATE / 2) {
+            int movesToMate = Math.max(1, (MiniMaxAdversary.MATE - Math.abs(evaluation) + 1) / 2);
+            return (evaluation > 0 ? "#" : "#-") + movesToMate;
+        }
+
+        return String.format(Locale.ROOT, "%+.2f", evaluation / 100.0);
+    }
+
+    private String formatPrincipalVariation(ChessBoard position, int[] principalVariation) {
+        ChessBoard line = new ChessBoard(position);
+        StringBuilder text = new StringBuilder();
+
+        for (int move : principalVariation) {
+            if (text.length() > 0) text.append(' ');
+            text.append(Moves.toSan(line, move));
+            line.makeMove(move);
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Newest search statistics together with the position they belong to
+     */
+    private static final class Update {
+        private final ChessBoard position;
+        private final SearchStatistics statistics;
+
+        private Update(ChessBoard position, SearchStatistics statistics) {
+            this.position = position;
+            this.statistics = statistics;
+        }
+    }
+
+    /**
+     * Vertical bar whose white part grows with the winning chances of white
+     */
+    private static class EvaluationBar extends JComponent {
+        private int evaluation;
+
+        private void setEvaluation(int evaluation) {
+            this.evaluation = evaluation;
+            repaint();
+        }
+
+        @Override
+        protected void paintComponent(Graphics graphics) {
+            double whiteShare = 1 / (1 + Math.pow(10, -evaluation / 400.0));
+            int whiteHeight = (int) Math.round(whiteShare * getHeight());
+
+            graphics.setColor(Colors.BROWN.getColor());
+            graphics.fillRect(0, 0, getWidth(), getHeight() - whiteHeight);
+            graphics.setColor(Colors.IVORY.getColor());
+            graphics.fillRect(0, getHeight() - whiteHeight, getWidth(), whiteHeight);
+        }
+    }
+}
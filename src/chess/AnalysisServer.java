@@ -0,0 +1,273 @@
+package chess;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Local HTTP interface of the engine, listening on the loopback address only:
+ * <pre>
+ * GET|POST /analyse?fen=...&amp;depth=4&amp;movetime=1000&amp;multipv=1         final statistics of the search as JSON
+ * GET|POST /analyse/stream?fen=...&amp;depth=4&amp;movetime=1000&amp;multipv=1  server-sent events "info" while searching, then "bestmove"
+ * </pre>
+ * Parameters of POST requests may also be sent form encoded in the body.
+ * With multipv above 1 the statistics contain the lines of that many best moves, all found by a single search.
+ * Requests for the same position and limits arriving while it is searched share that search.
+ */
+public class AnalysisServer {
+    public static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_DEPTH = 4;
+    private static final long DEFAULT_MOVE_TIME = 1_000;
+    private static final int MAX_LINE_COUNT = 256;
+    private static final int MAX_QUEUED_SEARCHES = 100;
+    private static final String FINISHED = "";
+
+    private final HttpServer httpServer;
+    private final ThreadPoolExecutor searchExecutor;
+    private final TranspositionTable transpositionTable;
+    private final EvaluationCache evaluationCache;
+    private final PawnHashTable pawnHashTable;
+    private final Map<String, Analysis> runningAnalyses;
+
+    public AnalysisServer(int port) throws IOException {
+        int searchThreads = Runtime.getRuntime().availableProcessors();
+
+        searchExecutor = new ThreadPoolExecutor(searchThreads, searchThreads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(MAX_QUEUED_SEARCHES), MiniMaxAdversary.daemonThreads("analysis"));
+        transpositionTable = new TranspositionTable(TranspositionTable.DEFAULT_SIZE_IN_MEGABYTES);
+        evaluationCache = new EvaluationCache(EvaluationCache.DEFAULT_ENTRIES);
+        pawnHashTable = new PawnHashTable(PawnHashTable.DEFAULT_ENTRIES);
+        runningAnalyses = new ConcurrentHashMap<>();
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.setExecutor(Executors.newCachedThreadPool(GameServer.virtualThreads("http")));
+        httpServer.createContext("/analyse", this::handle);
+    }
+
+    public void start() {
+        httpServer.start();
+    }
+
+    public void stop() {
+        httpServer.stop(0);
+        searchExecutor.shutdownNow();
+    }
+
+    /**
+     * Starts searching the position or joins the search of the same position and limits that is already running
+     * @param fen position in Forsyth-Edwards Notation
+     * @param depth maximal depth of the search
+     * @param moveTime time limit of the search in milliseconds
+     * @param lineCount number of best moves whose lines are searched, see {@link MiniMaxAdversary#setLineCount}
+     * @param listener receives statistics while searching, may be null
+     * @return statistics of the finished search
+     * @throws RejectedExecutionException if too many searches are queued
+     */
+    public CompletableFuture<SearchStatistics> analyse(String fen, int depth, long moveTime, int lineCount, SearchListener listener) {
+        if (depth < 1 || depth > MiniMaxAdversary.MAX_DEPTH) throw new IllegalArgumentException("Invalid depth!");
+        if (moveTime < 0) throw new IllegalArgumentException("Invalid move time!");
+        if (lineCount < 1 || lineCount > MAX_LINE_COUNT) throw new IllegalArgumentException("Invalid multipv!");
+
+        ChessBoard board = ChessBoard.fromFen(fen);
+        String key = Long.toHexString(board.getHash()) + " " + depth + " " + moveTime + " " + lineCount;
+
+        while (true) {
+            Analysis analysis = runningAnalyses.computeIfAbsent(key, ignored -> new Analysis());
+
+            synchronized (analysis) {
+                if (analysis.isFinished) continue;
+
+                if (listener != null) analysis.listeners.add(listener);
+                if (!analysis.isStarted) start(key, analysis, board, depth, moveTime, lineCount);
+
+                return analysis.result;
+            }
+        }
+    }
+
+    private void start(String key, Analysis analysis, ChessBoard board, int depth, long moveTime, int lineCount) {
+        MiniMaxAdversary adversary = new MiniMaxAdversary(board.getColorToMove(), board, depth, true);
+        adversary.setTranspositionTable(transpositionTable);
+        adversary.setEvaluationCache(evaluationCache);
+        adversary.setPawnHashTable(pawnHashTable);
+        adversary.setOpeningBook(null);
+        adversary.setMoveTime(moveTime);
+        adversary.setLineCount(lineCount);
+        adversary.addSearchListener(analysis);
+        board.setAdversary(adversary);
+
+        try {
+            searchExecutor.execute(() -> {
+                try {
+                    adversary.chooseMove();
+                    analysis.result.complete(adversary.getLastStatistics());
+                } catch (RuntimeException e) {
+                    analysis.result.completeExceptionally(e);
+                } finally {
+                    finish(key, analysis);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            finish(key, analysis);
+            throw e;
+        }
+
+        analysis.isStarted = true;
+    }
+
+    private void finish(String key, Analysis analysis) {
+        synchronized (analysis) {
+            analysis.isFinished = true;
+            runningAnalyses.remove(key, analysis);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            respond(exchange);
+        }
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        try {
+            Map<String, String> parameters = readParameters(exchange);
+            String fen = parameters.get("fen");
+
+            if (fen == null) throw new IllegalArgumentException("Missing fen!");
+
+            int depth = Integer.parseInt(parameters.getOrDefault("depth", String.valueOf(DEFAULT_DEPTH)));
+            long moveTime = Long.parseLong(parameters.getOrDefault("movetime", String.valueOf(DEFAULT_MOVE_TIME)));
+            int lineCount = Integer.parseInt(parameters.getOrDefault("multipv", "1"));
+
+            if (exchange.getRequestURI().getPath().equals("/analyse/stream")) {
+                stream(exchange, fen, depth, moveTime, lineCount);
+            } else {
+                send(exchange, 200, waitFor(analyse(fen, depth, moveTime, lineCount, null)).toJson());
+            }
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, "{\"error\":\"" + e.getMessage().replace("\\", "\\\\").replace("\"", "\\\"") + "\"}");
+        } catch (RejectedExecutionException e) {
+            send(exchange, 503, "{\"error\":\"Server is busy!\"}");
+        } catch (ExecutionException e) {
+            Logger.getLogger("global").log(Level.SEVERE, "Search failed!", e.getCause());
+            send(exchange, 500, "{\"error\":\"Search failed!\"}");
+        }
+    }
+
+    /**
+     * Sends statistics of the running search as server-sent events, updates are queued by search threads and written by the thread of the request.
+     * Once the events started a failed search can not change the status of the response, it is reported by an error event instead.
+     */
+    private void stream(HttpExchange exchange, String fen, int depth, long moveTime, int lineCount) throws IOException {
+        BlockingQueue<String> updates = new LinkedBlockingQueue<>();
+        CompletableFuture<SearchStatistics> result = analyse(fen, depth, moveTime, lineCount, statistics -> updates.offer(statistics.toJson()));
+        result.whenComplete((statistics, exception) -> updates.offer(FINISHED));
+
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+
+        OutputStream out = exchange.getResponseBody();
+
+        try {
+            for (String update = updates.take(); update != FINISHED; update = updates.take()) {
+                writeEvent(out, "info", update);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        try {
+            writeEvent(out, "bestmove", waitFor(result).toJson());
+        } catch (ExecutionException e) {
+            Logger.getLogger("global").log(Level.SEVERE, "Search failed!", e.getCause());
+            writeEvent(out, "error", "{\"error\":\"Search failed!\"}");
+        }
+    }
+
+    private void writeEvent(OutputStream out, String event, String data) throws IOException {
+        out.write(("event: " + event + "\ndata: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private SearchStatistics waitFor(CompletableFuture<SearchStatistics> result) throws ExecutionException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExecutionException(e);
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private Map<String, String> readParameters(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+
+        parseParameters(exchange.getRequestURI().getRawQuery(), parameters);
+
+        if (exchange.getRequestMethod().equals("POST")) {
+            parseParameters(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8), parameters);
+        }
+
+        return parameters;
+    }
+
+    private void parseParameters(String query, Map<String, String> parameters) {
+        if (query == null || query.isEmpty()) return;
+
+        for (String parameter : query.split("&")) {
+            int separator = parameter.indexOf('=');
+
+            if (separator < 0) continue;
+
+            parameters.put(URLDecoder.decode(parameter.substring(0, separator), StandardCharsets.UTF_8),
+                URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Search shared by all requests for the same position and limits
+     */
+    private static class Analysis implements SearchListener {
+        private final List<SearchListener> listeners = new CopyOnWriteArrayList<>();
+        private final CompletableFuture<SearchStatistics> result = new CompletableFuture<>();
+        private boolean isStarted;
+        private boolean isFinished;
+
+        @Override
+        public void onUpdate(SearchStatistics statistics) {
+            for (SearchListener listener : listeners) {
+                listener.onUpdate(statistics);
+            }
+        }
+    }
+}
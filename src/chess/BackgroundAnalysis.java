@@ -0,0 +1,74 @@
+package chess;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Search without depth and time limits of one position at a time on a background thread, used by the analysis board.
+ * Analysing another position stops the running search and starts searching the new one.
+ * All searches share one transposition table, so a position close to an analysed one, such as the next position of a game,
+ * starts with the results already found for it.
+ */
+public class BackgroundAnalysis {
+    private final ExecutorService analysisThread;
+    private final TranspositionTable transpositionTable;
+    private final Listener listener;
+    private volatile MiniMaxAdversary adversary;
+    private Future<?> task;
+
+    /**
+     * Receives statistics of the running search from search threads
+     */
+    public interface Listener {
+
+        /**
+         * @param position analysed position, must not be changed
+         * @param statistics statistics of its search
+         */
+        void onUpdate(ChessBoard position, SearchStatistics statistics);
+    }
+
+    public BackgroundAnalysis(Listener listener) {
+        this.listener = listener;
+        analysisThread = Executors.newSingleThreadExecutor(MiniMaxAdversary.daemonThreads("background-analysis"));
+        transpositionTable = new TranspositionTable(TranspositionTable.DEFAULT_SIZE_IN_MEGABYTES);
+    }
+
+    /**
+     * Stops analysing the previous position and starts searching a copy of the position, returns immediately
+     */
+    public synchronized void analyse(ChessBoard position) {
+        stop();
+
+        ChessBoard board = new ChessBoard(position);
+        MiniMaxAdversary adversary = new MiniMaxAdversary(board.getColorToMove(), board, MiniMaxAdversary.MAX_DEPTH, true);
+        adversary.setTranspositionTable(transpositionTable);
+        adversary.setOpeningBook(null);
+        adversary.setResultCache(null);
+        adversary.addSearchListener(statistics -> {
+            if (this.adversary == adversary) listener.onUpdate(board, statistics);
+        });
+        board.setAdversary(adversary);
+
+        this.adversary = adversary;
+        task = analysisThread.submit(adversary::chooseMove);
+    }
+
+    /**
+     * Stops the running search, no more updates are sent until another position is analysed
+     */
+    public synchronized void stop() {
+        if (adversary == null) return;
+
+        adversary.stopSearch();
+        task.cancel(false);
+        adversary = null;
+        task = null;
+    }
+
+    public synchronized void shutdown() {
+        stop();
+        analysisThread.shutdown();
+    }
+}
@@ -0,0 +1,352 @@
+package chess;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Command line analysis of EPD files or of every position in the games of PGN files, every position is searched to a fixed depth or time.
+ * Input is streamed line by line and positions are analysed in parallel with a bounded number of them in flight.
+ * Number of positions finished without a gap and the length of the output are written to the checkpoint file next to the output,
+ * so an interrupted run can be resumed by skipping them after cutting the output back to the checkpointed length.
+ * In unordered mode positions after the checkpoint may be written twice.
+ */
+public class BatchAnalyser {
+    private static final String CSV_HEADER = "id,fen,move,evaluation,depth,nodes,timeMs,pv";
+    private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+    private static final int CHECKPOINT_INTERVAL = 100;
+    private static final int DEFAULT_DEPTH = 4;
+
+    private final int depth;
+    private final long moveTime;
+    private final int threadCount;
+    private final boolean isOrdered;
+    private final boolean isJson;
+    private final TranspositionTable transpositionTable;
+    private final EvaluationCache evaluationCache;
+    private final PawnHashTable pawnHashTable;
+    private final Map<Long, String> pendingLines;
+    private final Map<Long, Boolean> finishedPositions;
+    private ExecutorService executor;
+    private Semaphore inFlight;
+    private BufferedWriter out;
+    private Path output;
+    private Path checkpoint;
+    private long nextLine;
+    private long finishedWithoutGap;
+
+    /**
+     * @param depth maximal depth of every search
+     * @param moveTime time limit of every search in milliseconds, 0 for no limit
+     * @param threadCount number of positions analysed at the same time
+     * @param isOrdered whether results are written in the order of the input
+     * @param isJson whether results are written as JSON lines instead of CSV
+     */
+    public BatchAnalyser(int depth, long moveTime, int threadCount, boolean isOrdered, boolean isJson) {
+        if (depth < 1 || depth > MiniMaxAdversary.MAX_DEPTH) throw new IllegalArgumentException("Invalid depth!");
+
+        this.depth = depth;
+        this.moveTime = moveTime;
+        this.threadCount = threadCount;
+        this.isOrdered = isOrdered;
+        this.isJson = isJson;
+        transpositionTable = new TranspositionTable(TranspositionTable.DEFAULT_SIZE_IN_MEGABYTES);
+        evaluationCache = new EvaluationCache(EvaluationCache.DEFAULT_ENTRIES);
+        pawnHashTable = new PawnHashTable(PawnHashTable.DEFAULT_ENTRIES);
+        pendingLines = new HashMap<>();
+        finishedPositions = new HashMap<>();
+    }
+
+    /**
+     * Runs the batch mode with arguments: input output [--depth n] [--movetime ms] [--threads n] [--unordered] [--json] [--resume]
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: input output [--depth n] [--movetime ms] [--threads n] [--unordered] [--json] [--resume]");
+            return;
+        }
+
+        int depth = DEFAULT_DEPTH;
+        long moveTime = 0;
+        int threadCount = Runtime.getRuntime().availableProcessors();
+        boolean isOrdered = true;
+        boolean isJson = false;
+        boolean resume = false;
+
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--depth":
+                    depth = Integer.parseInt(args[++i]);
+                    break;
+                case "--movetime":
+                    moveTime = Long.parseLong(args[++i]);
+                    break;
+                case "--threads":
+                    threadCount = Integer.parseInt(args[++i]);
+                    break;
+                case "--unordered":
+                    isOrdered = false;
+                    break;
+                case "--json":
+                    isJson = true;
+                    break;
+                case "--resume":
+                    resume = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i] + "!");
+            }
+        }
+
+        new BatchAnalyser(depth, moveTime, threadCount, isOrdered, isJson).analyse(Path.of(args[0]), Path.of(args[1]), resume);
+    }
+
+    /**
+     * Analyses all positions of the input file
+     * @param input EPD file with one position per line or PGN file if its name ends with .pgn
+     * @param output file results are written to
+     * @param resume whether to skip positions finished by an earlier run according to its checkpoint and append to the output
+     */
+    public void analyse(Path input, Path output, boolean resume) throws IOException, InterruptedException {
+        this.output = output;
+        checkpoint = Path.of(output + CHECKPOINT_SUFFIX);
+        String[] savedCheckpoint = resume && Files.exists(checkpoint) ? Files.readString(checkpoint).trim().split(" ") : new String[]{"0"};
+        long skipped = Long.parseLong(savedCheckpoint[0]);
+        boolean appends = skipped > 0 && Files.exists(output);
+
+        if (appends && savedCheckpoint.length > 1) truncate(output, Long.parseLong(savedCheckpoint[1]));
+
+        executor = Executors.newFixedThreadPool(threadCount, MiniMaxAdversary.daemonThreads("batch"));
+        inFlight = new Semaphore(2 * threadCount);
+        nextLine = skipped;
+        finishedWithoutGap = skipped;
+
+        try (BufferedWriter writer = appends
+                 ? Files.newBufferedWriter(output, StandardCharsets.UTF_8, StandardOpenOption.APPEND)
+                 : Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            out = writer;
+
+            if (!appends && !isJson) writeLine(CSV_HEADER);
+
+            if (input.toString().toLowerCase(Locale.ROOT).endsWith(".pgn")) analyseGames(input, skipped);
+            else analyseEpd(input, skipped);
+
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            writeCheckpoint();
+        }
+    }
+
+    /**
+     * Drops lines written after the checkpoint, their positions are analysed again
+     */
+    private void truncate(Path output, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+        }
+    }
+
+    private void analyseEpd(Path input, long skipped) throws IOException, InterruptedException {
+        try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String line;
+            long index = 0;
+
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) continue;
+
+                long positionIndex = index++;
+
+                if (positionIndex < skipped) continue;
+
+                String epd = line;
+
+                submit(positionIndex, () -> {
+                    String[] fields = epd.trim().split("\\s+");
+
+                    if (fields.length < 4) throw new IllegalArgumentException("Invalid EPD!");
+
+                    String fen = fields[0] + " " + fields[1] + " " + fields[2] + " " + fields[3];
+
+                    return analysePosition(findId(epd, positionIndex), fen, ChessBoard.fromFen(fen));
+                });
+            }
+        }
+    }
+
+    /**
+     * Analyses the position before every move of every game, positions are identified by the game number and the ply
+     */
+    private void analyseGames(Path input, long skipped) throws IOException, InterruptedException {
+        try (PgnReader in = PgnReader.open(input)) {
+            PgnGame game;
+            long index = 0;
+
+            for (int gameNumber = 1; (game = in.readGame()) != null; gameNumber++) {
+                ChessBoard board;
+
+                try {
+                    board = game.createStartingBoard();
+                } catch (IllegalArgumentException e) {
+                    Logger.getLogger("global").log(Level.WARNING, "Game " + gameNumber + " could not be set up: " + e.getMessage());
+                    continue;
+                }
+
+                for (int ply = 0; ply < game.getMoves().size(); ply++) {
+                    int move = Moves.parseSan(board, game.getMoves().get(ply));
+
+                    if (move == Moves.NO_MOVE) {
+                        Logger.getLogger("global").log(Level.WARNING, "Game " + gameNumber + " has invalid move " + game.getMoves().get(ply) + "!");
+                        break;
+                    }
+
+                    long positionIndex = index++;
+
+                    if (positionIndex >= skipped) {
+                        ChessBoard.Snapshot snapshot = board.snapshot();
+                        String id = gameNumber + "." + (ply + 1);
+
+                        submit(positionIndex, () -> {
+                            ChessBoard position = snapshot.toBoard();
+
+                            return analysePosition(id, position.toFen(), position);
+                        });
+                    }
+
+                    board.makeMove(move);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the analysis on the executor once less than the allowed number of positions are in flight
+     */
+    private void submit(long positionIndex, Supplier<String> analysis) throws InterruptedException {
+        inFlight.acquire();
+
+        executor.execute(() -> {
+            try {
+                finish(positionIndex, analysis.get());
+            } catch (RuntimeException e) {
+                Logger.getLogger("global").log(Level.WARNING, "Position " + (positionIndex + 1) + " could not be analysed: " + e.getMessage());
+                finish(positionIndex, null);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private String analysePosition(String id, String fen, ChessBoard board) {
+        MiniMaxAdversary adversary = new MiniMaxAdversary(board.getColorToMove(), board, depth, true);
+
+        adversary.setTranspositionTable(transpositionTable);
+        adversary.setEvaluationCache(evaluationCache);
+        adversary.setPawnHashTable(pawnHashTable);
+        adversary.setOpeningBook(null);
+        adversary.setMoveTime(moveTime);
+        board.setAdversary(adversary);
+        adversary.chooseMove();
+
+        return format(id, fen, adversary.getLastStatistics());
+    }
+
+    /**
+     * @return value of the EPD id operation or the line number of the position
+     */
+    private String findId(String epd, long positionIndex) {
+        int idStart = epd.indexOf(" id \"");
+
+        if (idStart < 0) return String.valueOf(positionIndex + 1);
+
+        int valueStart = idStart + 5;
+        int valueEnd = epd.indexOf('"', valueStart);
+
+        return valueEnd < 0 ? String.valueOf(positionIndex + 1) : epd.substring(valueStart, valueEnd);
+    }
+
+    private String format(String id, String fen, SearchStatistics statistics) {
+        if (isJson) {
+            return "{\"id\":\"" + id.replace("\"", "\\\"") + "\",\"fen\":\"" + fen + "\"," + statistics.toJson().substring(1);
+        }
+
+        StringBuilder principalVariation = new StringBuilder();
+
+        for (int move : statistics.getPrincipalVariation()) {
+            if (principalVariation.length() > 0) principalVariation.append(' ');
+            principalVariation.append(Moves.toString(move));
+        }
+
+        return String.join(",", csvField(id), fen, statistics.getBestMove() == Moves.NO_MOVE ? "" : Moves.toString(statistics.getBestMove()),
+            String.valueOf(statistics.getEvaluation()), String.valueOf(statistics.getDepth()), String.valueOf(statistics.getNodes()),
+            String.valueOf(statistics.getElapsedTime() / 1_000_000), principalVariation.toString());
+    }
+
+    private String csvField(String value) {
+        return value.contains(",") || value.contains("\"") ? '"' + value.replace("\"", "\"\"") + '"' : value;
+    }
+
+    /**
+     * Writes the result of a finished position, in ordered mode once all positions before it are written
+     * @param result line to write or null if the position failed
+     */
+    private synchronized void finish(long positionIndex, String result) {
+        if (isOrdered) {
+            pendingLines.put(positionIndex, result == null ? "" : result);
+
+            for (String line = pendingLines.remove(nextLine); line != null; line = pendingLines.remove(nextLine)) {
+                if (!line.isEmpty()) writeLine(line);
+                nextLine++;
+            }
+        } else if (result != null) {
+            writeLine(result);
+        }
+
+        finishedPositions.put(positionIndex, Boolean.TRUE);
+
+        long previousCheckpoint = finishedWithoutGap;
+
+        while (finishedPositions.remove(finishedWithoutGap) != null) {
+            finishedWithoutGap++;
+        }
+
+        if (finishedWithoutGap / CHECKPOINT_INTERVAL != previousCheckpoint / CHECKPOINT_INTERVAL) writeCheckpoint();
+    }
+
+    private void writeLine(String line) {
+        try {
+            out.write(line);
+            out.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Flushes the output before recording the checkpoint, so that every checkpointed position is in the output file
+     * and the recorded length covers all written lines
+     */
+    private synchronized void writeCheckpoint() {
+        try {
+            out.flush();
+            Files.writeString(checkpoint, finishedWithoutGap + " " + Files.size(output));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
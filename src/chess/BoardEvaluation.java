@@ -0,0 +1,137 @@
+package chess;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Material and piece-square evaluation over the 64 piece codes of a board.
+ * Values of every piece code are kept in one flat table indexed by code * 64 + square, signed for the side owning the piece,
+ * so an evaluation is a single branch-free loop of 64 loads with no switch over the pieces and no Field objects.
+ * Empty squares point to a block of zeros.
+ * {@link #main} checks the results against the scalar evaluation and benchmarks both.
+ */
+public class BoardEvaluation {
+    private static final int CODES = 32;
+    private static int[] materialTable;
+    private static int[] midGameTable;
+    private static int[] endgameTable;
+
+    private static synchronized void initializeTables() {
+        if (materialTable != null) return;
+
+        int[] material = new int[CODES * 64];
+        int[] midGame = new int[CODES * 64];
+        int[] endgame = new int[CODES * 64];
+
+        for (ChessBoard.ChessPiece.Color color : new ChessBoard.ChessPiece.Color[]{ChessBoard.ChessPiece.Color.WHITE, ChessBoard.ChessPiece.Color.BLACK}) {
+            for (ChessBoard.ChessPiece.Piece piece : ChessBoard.ChessPiece.Piece.values()) {
+                if (piece == ChessBoard.ChessPiece.Piece.NONE) continue;
+
+                int offset = ChessBoard.pieceCode(new ChessBoard.ChessPiece(color, piece)) * 64;
+                int sign = color == ChessBoard.ChessPiece.Color.WHITE ? 1 : -1;
+                int[] midGameValues = PieceTables.getTable(PieceTables.tableIndex(piece, false));
+                int[] endgameValues = PieceTables.getTable(PieceTables.tableIndex(piece, true));
+
+                for (int square = 0; square < 64; square++) {
+                    int tableSquare = PieceTables.tableSquare(Moves.getRow(square), Moves.getColumn(square), color);
+
+                    material[offset + square] = sign * PieceTables.getPieceValue(piece);
+                    midGame[offset + square] = material[offset + square] + sign * midGameValues[tableSquare];
+                    endgame[offset + square] = material[offset + square] + sign * endgameValues[tableSquare];
+                }
+            }
+        }
+
+        midGameTable = midGame;
+        endgameTable = endgame;
+        materialTable = material;
+    }
+
+    /**
+     * @return material balance from white perspective, equal to counting the value of every piece
+     */
+    public static int material(ChessBoard board) {
+        if (materialTable == null) initializeTables();
+
+        return sum(board.getPieceCodes(), materialTable);
+    }
+
+    /**
+     * @return material and piece-square values from white perspective, equal to {@link PieceTables#evaluate}
+     */
+    public static int evaluate(ChessBoard board) {
+        if (materialTable == null) initializeTables();
+
+        return sum(board.getPieceCodes(), board.isEndgame() ? endgameTable : midGameTable);
+    }
+
+    private static int sum(byte[] pieceCodes, int[] table) {
+        int total = 0;
+
+        for (int square = 0; square < 64; square++) {
+            total += table[pieceCodes[square] << 6 | square];
+        }
+
+        return total;
+    }
+
+    /**
+     * Scalar reference: one table lookup per occupied square, branching on empty squares
+     */
+    static int scalarEvaluate(ChessBoard board) {
+        return PieceTables.evaluate(board);
+    }
+
+    /**
+     * Checks both paths on random positions reached by random moves and prints the time per evaluation.
+     * Arguments: [positions], default 2000
+     */
+    public static void main(String[] args) {
+        int positionCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        Random random = new Random(1);
+        ChessBoard[] positions = new ChessBoard[positionCount];
+        int[] moves = new int[ChessBoard.MAX_MOVES];
+
+        for (int i = 0; i < positionCount; i++) {
+            ChessBoard board = ChessBoard.startingPosition();
+            int plies = random.nextInt(120);
+
+            for (int ply = 0; ply < plies; ply++) {
+                int count = board.generateMoves(moves);
+                if (count == 0) break;
+                board.makeMove(moves[random.nextInt(count)]);
+            }
+
+            positions[i] = board;
+        }
+
+        for (ChessBoard position : positions) {
+            if (evaluate(position) != scalarEvaluate(position)) {
+                throw new IllegalStateException("Evaluations differ in " + position.toFen() + ": " + evaluate(position) + " != " + scalarEvaluate(position));
+            }
+        }
+
+        System.out.println(positionCount + " positions evaluated identically");
+
+        for (int round = 0; round < 5; round++) {
+            long checksum = 0;
+            long start = System.nanoTime();
+
+            for (int repeat = 0; repeat < 100; repeat++) {
+                for (ChessBoard position : positions) checksum += scalarEvaluate(position);
+            }
+
+            long scalarTime = System.nanoTime() - start;
+            start = System.nanoTime();
+
+            for (int repeat = 0; repeat < 100; repeat++) {
+                for (ChessBoard position : positions) checksum -= evaluate(position);
+            }
+
+            long tableTime = System.nanoTime() - start;
+
+            System.out.printf(Locale.ROOT, "scalar %.1f ns, table %.1f ns per evaluation (checksum %d)%n",
+                (double) scalarTime / (100L * positionCount), (double) tableTime / (100L * positionCount), checksum);
+        }
+    }
+}
@@ -5,21 +5,164 @@ import java.util.*;
 import static chess.ChessBoard.ChessPiece.Color.BLACK;
 import static chess.ChessBoard.ChessPiece.Color.WHITE;
 
+/**
+ * Chess position stored as a mailbox of 64 piece codes (row * 8 + column, color ordinal * 8 + piece ordinal)
+ * with castling rights and the en passant square kept as explicit state.
+ * Move generation and attack detection walk precomputed target lists and rays of every square, so they never
+ * check for leaving the board and create no objects. {@link Field} and {@link Field.Position} are views
+ * created on request for the user interface.
+ */
 public class ChessBoard {
-    private final Field[][] board;
+    public static final int MAX_MOVES = 256;
+    private static final int INITIAL_HISTORY_CAPACITY = 32;
+    private static final String STARTING_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq -";
+    private static final ChessPiece.Color[] COLORS = ChessPiece.Color.values();
+    private static final ChessPiece.Piece[] PIECES = ChessPiece.Piece.values();
+    private static final int COLOR_MASK = 0x18;
+    private static final int PIECE_MASK = 0x07;
+    private static final int[][] KNIGHT_OFFSETS = {{-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1}};
+    private static final int[][] KING_OFFSETS = {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}};
+    private static final int[][] DIRECTIONS = {{-1, -1}, {-1, 1}, {1, -1}, {1, 1}, {0, 1}, {0, -1}, {1, 0}, {-1, 0}};
+    private static final int FIRST_DIAGONAL = 0;
+    private static final int FIRST_STRAIGHT = 4;
+    private static final int[][] KNIGHT_TARGETS = stepTargets(KNIGHT_OFFSETS);
+    private static final int[][] KING_TARGETS = stepTargets(KING_OFFSETS);
+    private static final int[][][] RAYS = rays();
+    public static final int NO_SQUARE = -1;
+    private static final int WHITE_KING_SIDE = 1;
+    private static final int WHITE_QUEEN_SIDE = 2;
+    private static final int BLACK_KING_SIDE = 4;
+    private static final int BLACK_QUEEN_SIDE = 8;
+    private static final int[] CASTLING_MASKS = castlingMasks();
+    private static final int WHITE_QUEEN_STANDING = 1;
+    private static final int BLACK_QUEEN_STANDING = 2;
+    private static final int CASTLING_SHIFT = 2;
+    private static final int EN_PASSANT_SHIFT = 6;
+    private static final int CAPTURED_SHIFT = 13;
+    private static final int KEYS_PER_MOVE = 4;
+    private static final int[] NO_INTS = new int[0];
+    private static final long[] NO_LONGS = new long[0];
+    private static final long[][] PIECE_KEYS = new long[12][64];
+    private static final long[] CASTLING_KEYS = new long[16];
+    private static final long[] EN_PASSANT_KEYS = new long[8];
+    private static final long SIDE_KEY;
+
+    private byte[] pieceCodes = new byte[64];
+    private boolean isShared;
     private ComputerAdversary adversary;
     private ChessPiece.Color colorToMove;
-    private final Stack<ChessPiece> lastTaken;
+    private int[] stateHistory;
+    private long[] keyHistory;
+    private int historySize;
+    private long hash;
+    private long pawnHash;
+    private long whitePawns;
+    private long blackPawns;
     private boolean whiteQueenStanding;
     private boolean blackQueenStanding;
-    private Field whiteKingField;
-    private Field blackKingField;
+    private int whiteKingSquare;
+    private int blackKingSquare;
+    private int pieceCount;
+    private int castlingRights;
+    private int enPassantSquare = NO_SQUARE;
+    private NnueAccumulator accumulator;
+
+    static {
+        Random random = new Random(0x5EED);
+
+        for (long[] pieceKeys : PIECE_KEYS) {
+            for (int square = 0; square < 64; square++) {
+                pieceKeys[square] = random.nextLong();
+            }
+        }
+
+        SIDE_KEY = random.nextLong();
+
+        //Keys of the combined rights are the XOR of the keys of single rights, no rights hash to 0
+        long[] rightKeys = {random.nextLong(), random.nextLong(), random.nextLong(), random.nextLong()};
+
+        for (int rights = 0; rights < CASTLING_KEYS.length; rights++) {
+            for (int right = 0; right < rightKeys.length; right++) {
+                if ((rights & 1 << right) != 0) CASTLING_KEYS[rights] ^= rightKeys[right];
+            }
+        }
+
+        for (int column = 0; column < EN_PASSANT_KEYS.length; column++) {
+            EN_PASSANT_KEYS[column] = random.nextLong();
+        }
+    }
+
+    /**
+     * @return for every square the castling rights kept when a piece moves from or to it
+     */
+    private static int[] castlingMasks() {
+        int[] masks = new int[64];
+
+        Arrays.fill(masks, WHITE_KING_SIDE | WHITE_QUEEN_SIDE | BLACK_KING_SIDE | BLACK_QUEEN_SIDE);
+        masks[Moves.square(7, 4)] &= ~(WHITE_KING_SIDE | WHITE_QUEEN_SIDE);
+        masks[Moves.square(7, 7)] &= ~WHITE_KING_SIDE;
+        masks[Moves.square(7, 0)] &= ~WHITE_QUEEN_SIDE;
+        masks[Moves.square(0, 4)] &= ~(BLACK_KING_SIDE | BLACK_QUEEN_SIDE);
+        masks[Moves.square(0, 7)] &= ~BLACK_KING_SIDE;
+        masks[Moves.square(0, 0)] &= ~BLACK_QUEEN_SIDE;
+
+        return masks;
+    }
+
+    /**
+     * @return for every square the squares reached by the offsets that stay on the board, in the order of the offsets
+     */
+    private static int[][] stepTargets(int[][] offsets) {
+        int[][] targets = new int[64][];
+
+        for (int square = 0; square < 64; square++) {
+            int[] found = new int[offsets.length];
+            int count = 0;
+
+            for (int[] offset : offsets) {
+                int row = Moves.getRow(square) + offset[0];
+                int column = Moves.getColumn(square) + offset[1];
+
+                if (isOnBoard(row, column)) found[count++] = Moves.square(row, column);
+            }
+
+            targets[square] = Arrays.copyOf(found, count);
+        }
+
+        return targets;
+    }
+
+    /**
+     * @return for every square and direction the squares along the direction up to the edge of the board, nearest first
+     */
+    private static int[][][] rays() {
+        int[][][] rays = new int[64][DIRECTIONS.length][];
+
+        for (int square = 0; square < 64; square++) {
+            for (int direction = 0; direction < DIRECTIONS.length; direction++) {
+                int[] found = new int[7];
+                int count = 0;
+                int row = Moves.getRow(square) + DIRECTIONS[direction][0];
+                int column = Moves.getColumn(square) + DIRECTIONS[direction][1];
+
+                while (isOnBoard(row, column)) {
+                    found[count++] = Moves.square(row, column);
+                    row += DIRECTIONS[direction][0];
+                    column += DIRECTIONS[direction][1];
+                }
+
+                rays[square][direction] = Arrays.copyOf(found, count);
+            }
+        }
+
+        return rays;
+    }
 
     //TODO Delete
     public void debug() {
-        for(Field[] row : board) {
-            for (Field field : row) {
-                ChessPiece currentPiece = field.getChessPiece();
+        for (int row = 0; row < 8; row++) {
+            for (int column = 0; column < 8; column++) {
+                ChessPiece currentPiece = getField(row, column).getChessPiece();
                 System.out.print(currentPiece.getPiece().getName().charAt(0) + "" + currentPiece.getColor().getColor().charAt(0) + " ");
             }
             System.out.println();
@@ -28,46 +171,192 @@ public class ChessBoard {
     }
 
     public static ChessBoard startingPosition() {
-        Field[][] board = new Field[8][8];
-        PieceTables.initializePieceTables();
-
-        return new ChessBoard(board);
+        return fromFen(STARTING_FEN);
     }
 
-    public ChessBoard(ChessBoard chessBoard) {
-        Field[][] copiedBoard = new Field[8][8];
+    /**
+     * Creates position described in Forsyth-Edwards Notation, the move counters are ignored.
+     * Castling rights without the king and rook on their squares and en passant squares no pawn can capture on are dropped
+     * @param fen position, e.g. rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq - 0 1
+     * @return created position
+     */
+    public static ChessBoard fromFen(String fen) {
+        String[] parts = fen.trim().split("\\s+");
+        String[] rows = parts[0].split("/");
+        String castling = parts.length > 2 ? parts[2] : "-";
+        String enPassant = parts.length > 3 ? parts[3] : "-";
+
+        if (rows.length != 8 || countOf(parts[0], 'K') != 1 || countOf(parts[0], 'k') != 1) throw new IllegalArgumentException("Invalid FEN!");
+
+        PieceTables.initializePieceTables();
+        ChessBoard chessBoard = new ChessBoard();
 
         for (int row = 0; row < 8; row++) {
-            for (int column = 0; column < 8; column++) {
-                copiedBoard[row][column] = new Field(chessBoard.getField(row, column));
+            int column = 0;
+
+            for (char symbol : rows[row].toCharArray()) {
+                if (symbol >= '1' && symbol <= '8') {
+                    column += symbol - '0';
+                    continue;
+                }
+
+                if (column > 7) throw new IllegalArgumentException("Invalid FEN!");
+
+                ChessPiece.Color color = Character.isUpperCase(symbol) ? ChessPiece.Color.WHITE : BLACK;
+
+                chessBoard.addPiece(row, column++, new ChessPiece(color, ChessPiece.Piece.ofSymbol(symbol)));
             }
+
+            if (column != 8) throw new IllegalArgumentException("Invalid FEN!");
         }
 
-        board = copiedBoard;
-        adversary = chessBoard.getAdversary();
-        colorToMove = chessBoard.colorToMove;
-        lastTaken = (Stack<ChessPiece>) chessBoard.lastTaken.clone();
-        whiteQueenStanding = chessBoard.whiteQueenStanding;
-        blackQueenStanding = chessBoard.blackQueenStanding;
-        whiteKingField = new Field(chessBoard.whiteKingField);
-        blackKingField = new Field(chessBoard.blackKingField);
+        if (parts.length > 1 && parts[1].equals("b")) chessBoard.changeTurn();
+        else if (parts.length > 1 && !parts[1].equals("w")) throw new IllegalArgumentException("Invalid FEN!");
+
+        int castlingRights = 0;
+
+        if (castling.indexOf('K') >= 0 && chessBoard.hasCastlingPieces(7, 7)) castlingRights |= WHITE_KING_SIDE;
+        if (castling.indexOf('Q') >= 0 && chessBoard.hasCastlingPieces(7, 0)) castlingRights |= WHITE_QUEEN_SIDE;
+        if (castling.indexOf('k') >= 0 && chessBoard.hasCastlingPieces(0, 7)) castlingRights |= BLACK_KING_SIDE;
+        if (castling.indexOf('q') >= 0 && chessBoard.hasCastlingPieces(0, 0)) castlingRights |= BLACK_QUEEN_SIDE;
+
+        chessBoard.setCastlingRights(castlingRights);
+
+        if (!enPassant.equals("-")) {
+            if (!enPassant.matches("[a-h][36]")) throw new IllegalArgumentException("Invalid FEN!");
+
+            int column = enPassant.charAt(0) - 'a';
+            int row = '8' - enPassant.charAt(1);
+            int pawnSquare = Moves.square(row + (chessBoard.colorToMove == ChessPiece.Color.WHITE ? 1 : -1), column);
+
+            chessBoard.setEnPassantSquare(chessBoard.canBeCapturedEnPassant(pawnSquare) ? Moves.square(row, column) : NO_SQUARE);
+        }
+
+        return chessBoard;
     }
 
-    private ChessBoard(Field[][] board) {
-        this.board = board;
-        adversary = new MiniMaxAdversary(BLACK, this, 3, true);
-        lastTaken = new Stack<>();
-        whiteQueenStanding = true;
-        blackQueenStanding = true;
+    /**
+     * Describes the position in Forsyth-Edwards Notation without the move counters
+     * @return position, side to move, castling rights and en passant square
+     */
+    public String toFen() {
+        StringBuilder fen = new StringBuilder();
 
         for (int row = 0; row < 8; row++) {
+            int emptyFields = 0;
+
             for (int column = 0; column < 8; column++) {
-                board[row][column] = new Field(row, column, new ChessPiece());
+                int code = pieceCodes[Moves.square(row, column)];
+
+                if (code == 0) {
+                    emptyFields++;
+                    continue;
+                }
+
+                if (emptyFields > 0) fen.append(emptyFields);
+
+                emptyFields = 0;
+                char symbol = PIECES[code & PIECE_MASK].getSymbol();
+                fen.append((code & COLOR_MASK) == colorCode(WHITE) ? Character.toUpperCase(symbol) : symbol);
             }
+
+            if (emptyFields > 0) fen.append(emptyFields);
+            if (row < 7) fen.append('/');
         }
 
-        putPiecesOnStartingPositions(board);
+        fen.append(colorToMove == ChessPiece.Color.WHITE ? " w " : " b ");
+
+        int castlingStart = fen.length();
+
+        if ((castlingRights & WHITE_KING_SIDE) != 0) fen.append('K');
+        if ((castlingRights & WHITE_QUEEN_SIDE) != 0) fen.append('Q');
+        if ((castlingRights & BLACK_KING_SIDE) != 0) fen.append('k');
+        if ((castlingRights & BLACK_QUEEN_SIDE) != 0) fen.append('q');
+        if (fen.length() == castlingStart) fen.append('-');
+
+        if (enPassantSquare == NO_SQUARE) return fen.append(" -").toString();
+
+        return fen.append(' ').append((char) ('a' + Moves.getColumn(enPassantSquare))).append((char) ('8' - Moves.getRow(enPassantSquare))).toString();
+    }
+
+    /**
+     * @return whether the king and the rook of the castle stand on their starting squares
+     */
+    private boolean hasCastlingPieces(int row, int rookColumn) {
+        int color = colorCode(row == 7 ? ChessPiece.Color.WHITE : BLACK);
+
+        return pieceCodes[Moves.square(row, 4)] == (color | ChessPiece.Piece.KING.ordinal())
+            && pieceCodes[Moves.square(row, rookColumn)] == (color | ChessPiece.Piece.ROOK.ordinal());
+    }
+
+    private static int countOf(String text, char symbol) {
+        return (int) text.chars().filter(character -> character == symbol).count();
+    }
+
+    /**
+     * Copy of the position without its move history, the squares are shared with the copied board until either of them changes
+     */
+    public ChessBoard(ChessBoard chessBoard) {
+        this(chessBoard.snapshot());
+    }
+
+    /**
+     * Board of the snapshot's position, the snapshot's squares are copied when the board changes for the first time
+     */
+    public ChessBoard(Snapshot snapshot) {
+        this(snapshot.adversary);
+        pieceCodes = snapshot.pieceCodes;
+        isShared = true;
+        colorToMove = snapshot.colorToMove;
+        hash = snapshot.hash;
+        pawnHash = snapshot.pawnHash;
+        whitePawns = snapshot.whitePawns;
+        blackPawns = snapshot.blackPawns;
+        whiteQueenStanding = snapshot.whiteQueenStanding;
+        blackQueenStanding = snapshot.blackQueenStanding;
+        whiteKingSquare = snapshot.whiteKingSquare;
+        blackKingSquare = snapshot.blackKingSquare;
+        pieceCount = snapshot.pieceCount;
+        castlingRights = snapshot.castlingRights;
+        enPassantSquare = snapshot.enPassantSquare;
+    }
+
+    /**
+     * Empty board with white to move
+     */
+    private ChessBoard() {
+        this((ComputerAdversary) null);
+        adversary = new MiniMaxAdversary(BLACK, this, 3, true);
+    }
+
+    /**
+     * The move history is allocated by the first move made
+     */
+    private ChessBoard(ComputerAdversary adversary) {
+        this.adversary = adversary;
         colorToMove = ChessPiece.Color.WHITE;
+        stateHistory = NO_INTS;
+        keyHistory = NO_LONGS;
+    }
+
+    /**
+     * Takes an immutable copy of the current position without copying the squares, this board copies them before its next change
+     * @return snapshot that can be handed to other threads
+     */
+    public Snapshot snapshot() {
+        isShared = true;
+
+        return new Snapshot(this);
+    }
+
+    /**
+     * Stops sharing the squares with snapshots, called before every change of the squares
+     */
+    private void ensureOwnSquares() {
+        if (isShared) {
+            pieceCodes = pieceCodes.clone();
+            isShared = false;
+        }
     }
 
     public void setAdversary(ComputerAdversary adversary) {
@@ -78,616 +367,786 @@ public class ChessBoard {
         ChessPiece.Color previousColor = colorToMove;
         colorToMove = color;
 
-        List<Field.Move> possibleMoves = getAllValidMoves(color);
+        int possibleMoves = generateMoves(new int[MAX_MOVES]);
 
         colorToMove = previousColor;
 
-        return possibleMoves.isEmpty();
+        return possibleMoves == 0;
     }
 
     public boolean isCheckMate(ChessPiece.Color matingSite) {
-        Field enemyKingField = colorToMove == ChessPiece.Color.WHITE ? whiteKingField : blackKingField;
+        int enemyKingSquare = getKingSquare(colorToMove);
         ChessPiece.Color opposingColor = ChessPiece.Color.getOpposingColor(matingSite);
 
-        boolean isAttacked = enemyKingField.getPosition().isAttacked(matingSite);
+        boolean isAttacked = isAttacked(enemyKingSquare, colorCode(matingSite));
 
 
         return cannotMove(opposingColor) && isAttacked;
     }
 
-    public void makeMove(Field.Move moveToMake) {
-        ChessPiece movedPiece = new ChessPiece(getField(moveToMake.getFrom().getPosition()).getChessPiece());
-        lastTaken.push(getField(moveToMake.getPosition()).getChessPiece());
-        getField(moveToMake.getFrom().getPosition()).setChessPiece(new ChessPiece());
-        getField(moveToMake.getPosition()).setChessPiece(movedPiece);
+    /**
+     * Makes an encoded move without allocating, handling castling, en passant and promotion
+     * @param move move encoded by {@link Moves}
+     */
+    public void makeMove(int move) {
+        ensureOwnSquares();
+
+        int from = Moves.getFrom(move);
+        int to = Moves.getTo(move);
+        ChessPiece.SpecialMove specialMove = Moves.getSpecialMove(move);
+        int capturedSquare = specialMove == ChessPiece.SpecialMove.EN_PASSANT ? Moves.square(Moves.getRow(from), Moves.getColumn(to)) : to;
+        int movedCode = pieceCodes[from];
+        int capturedCode = pieceCodes[capturedSquare];
+        int arrivingCode = movedCode;
+
+        pushHistory(capturedCode);
+
+        if (accumulator != null) {
+            accumulator.push();
+            accumulator.removePiece(movedCode, from);
+            accumulator.removePiece(capturedCode, capturedSquare);
+        }
+
+        togglePiece(movedCode, from);
+        togglePiece(capturedCode, capturedSquare);
+
+        if (specialMove == ChessPiece.SpecialMove.CASTLE) {
+            moveCastlingRook(to, 1);
+        } else if (specialMove == ChessPiece.SpecialMove.PROMOTION) {
+            arrivingCode = movedCode & COLOR_MASK | Moves.getPromotion(move).ordinal();
+
+            if (Moves.getPromotion(move) == ChessPiece.Piece.QUEEN) {
+                if ((movedCode & COLOR_MASK) == colorCode(WHITE)) whiteQueenStanding = true;
+                else blackQueenStanding = true;
+            }
+        }
+
+        togglePiece(arrivingCode, to);
+        if (accumulator != null) accumulator.addPiece(arrivingCode, to);
+        setCastlingRights(castlingRights & CASTLING_MASKS[from] & CASTLING_MASKS[to]);
         changeTurn();
 
-        if(lastTaken.peek().getPiece() == ChessPiece.Piece.QUEEN) {
-            if(lastTaken.peek().getColor() == ChessPiece.Color.WHITE) whiteQueenStanding = false;
+        boolean isDoublePush = PIECES[movedCode & PIECE_MASK] == ChessPiece.Piece.PAWN && Math.abs(to - from) == 16;
+        setEnPassantSquare(isDoublePush && canBeCapturedEnPassant(to) ? (from + to) / 2 : NO_SQUARE);
+
+        if(capturedCode != 0) pieceCount--;
+
+        if(PIECES[capturedCode & PIECE_MASK] == ChessPiece.Piece.QUEEN) {
+            if((capturedCode & COLOR_MASK) == colorCode(WHITE)) whiteQueenStanding = false;
             else blackQueenStanding = false;
         }
 
-        if (movedPiece.getPiece() == ChessPiece.Piece.KING) {
-            if(movedPiece.getColor() == ChessPiece.Color.WHITE) whiteKingField = getField(moveToMake.getPosition());
-            else blackKingField = getField(moveToMake.getPosition());
+        if (PIECES[movedCode & PIECE_MASK] == ChessPiece.Piece.KING) {
+            if((movedCode & COLOR_MASK) == colorCode(WHITE)) whiteKingSquare = to;
+            else blackKingSquare = to;
         }
-
     }
 
-    public void unmakeMove(Field.Move moveMade) {
-        ChessPiece chessPiece = lastTaken.pop();
+    /**
+     * Takes back an encoded move, it has to be the last move made
+     * @param move move encoded by {@link Moves}
+     */
+    public void unmakeMove(int move) {
+        ensureOwnSquares();
+
+        int from = Moves.getFrom(move);
+        int to = Moves.getTo(move);
+        ChessPiece.SpecialMove specialMove = Moves.getSpecialMove(move);
+        int capturedSquare = specialMove == ChessPiece.SpecialMove.EN_PASSANT ? Moves.square(Moves.getRow(from), Moves.getColumn(to)) : to;
+        int movedCode = pieceCodes[to];
+        int captured = popHistory();
+
+        if (specialMove == ChessPiece.SpecialMove.CASTLE) {
+            moveCastlingRook(to, -1);
+        } else if (specialMove == ChessPiece.SpecialMove.PROMOTION) {
+            movedCode = movedCode & COLOR_MASK | ChessPiece.Piece.PAWN.ordinal();
+        }
 
-        ChessPiece movedPiece = new ChessPiece(getField(moveMade.getPosition()).getChessPiece());
-        getField(moveMade.getPosition()).setChessPiece(chessPiece);
-        getField(moveMade.getFrom().getPosition()).setChessPiece(movedPiece);
+        pieceCodes[from] = (byte) movedCode;
+        pieceCodes[to] = 0;
+        pieceCodes[capturedSquare] = (byte) captured;
         changeTurn();
+        hash = keyHistory[KEYS_PER_MOVE * historySize];
+        if (accumulator != null) accumulator.pop();
+        pawnHash = keyHistory[KEYS_PER_MOVE * historySize + 1];
+        whitePawns = keyHistory[KEYS_PER_MOVE * historySize + 2];
+        blackPawns = keyHistory[KEYS_PER_MOVE * historySize + 3];
 
-        if(chessPiece.getPiece() == ChessPiece.Piece.QUEEN) {
-            if(chessPiece.getColor() == ChessPiece.Color.WHITE) whiteQueenStanding = true;
-            else blackQueenStanding = true;
+        if(captured != 0) pieceCount++;
+
+        if(PIECES[movedCode & PIECE_MASK] == ChessPiece.Piece.KING) {
+            if((movedCode & COLOR_MASK) == colorCode(WHITE)) whiteKingSquare = from;
+            else blackKingSquare = from;
         }
+    }
 
-        if(movedPiece.getPiece() == ChessPiece.Piece.KING) {
-            if(movedPiece.getColor() == ChessPiece.Color.WHITE) whiteKingField = moveMade.getFrom();
-            else blackKingField = moveMade.getFrom();
+    /**
+     * Moves the rook taking part in castling
+     * @param kingSquare square the king castled to
+     * @param direction 1 when making the castle, -1 when taking it back, hashes are then restored from the history
+     */
+    private void moveCastlingRook(int kingSquare, int direction) {
+        int row = Moves.getRow(kingSquare);
+        int cornerSquare = Moves.square(row, Moves.getColumn(kingSquare) == 2 ? 0 : 7);
+        int rookSquare = Moves.square(row, Moves.getColumn(kingSquare) == 2 ? 3 : 5);
+        int sourceSquare = direction == 1 ? cornerSquare : rookSquare;
+        int targetSquare = direction == 1 ? rookSquare : cornerSquare;
+        int rookCode = pieceCodes[sourceSquare];
+
+        if (direction == 1) {
+            togglePiece(rookCode, sourceSquare);
+            togglePiece(rookCode, targetSquare);
+
+            if (accumulator != null) {
+                accumulator.removePiece(rookCode, sourceSquare);
+                accumulator.addPiece(rookCode, targetSquare);
+            }
+        } else {
+            pieceCodes[sourceSquare] = 0;
+            pieceCodes[targetSquare] = (byte) rookCode;
         }
     }
 
-    public boolean isEndgame() {
-        return !whiteQueenStanding && !blackQueenStanding;
+    /**
+     * Changes the castling rights and their part of the hash
+     * @param castlingRights combination of the WHITE_KING_SIDE, WHITE_QUEEN_SIDE, BLACK_KING_SIDE and BLACK_QUEEN_SIDE bits
+     */
+    private void setCastlingRights(int castlingRights) {
+        hash ^= CASTLING_KEYS[this.castlingRights] ^ CASTLING_KEYS[castlingRights];
+        this.castlingRights = castlingRights;
     }
 
-    public ComputerAdversary getAdversary() {
-        return adversary;
+    /**
+     * Changes the en passant square and its part of the hash
+     * @param enPassantSquare square a pawn capturing en passant moves to or NO_SQUARE
+     */
+    private void setEnPassantSquare(int enPassantSquare) {
+        if (this.enPassantSquare != NO_SQUARE) hash ^= EN_PASSANT_KEYS[Moves.getColumn(this.enPassantSquare)];
+        if (enPassantSquare != NO_SQUARE) hash ^= EN_PASSANT_KEYS[Moves.getColumn(enPassantSquare)];
+
+        this.enPassantSquare = enPassantSquare;
     }
 
-    public List<Field.Move> getAllValidMoves(ChessBoard.ChessPiece.Color color) {
-        List<Field.Move> validMoves = new ArrayList<>();
+    /**
+     * The en passant square is only set when a capture is possible, so that positions differing only in an unusable
+     * en passant square hash the same
+     * @param pawnSquare square of a pawn of the side not to move that has just advanced two squares
+     * @return whether a pawn of the side to move stands next to it
+     */
+    private boolean canBeCapturedEnPassant(int pawnSquare) {
+        int color = colorCode(colorToMove);
+        int pawn = color | ChessPiece.Piece.PAWN.ordinal();
+        int column = Moves.getColumn(pawnSquare);
 
-        for (Field[] fieldRow : board) {
-            for (Field field : fieldRow) {
-                if(field.getChessPiece().getColor() == color) {
-                    validMoves.addAll(field.getValidMoves());
-                }
-            }
-        }
+        if (Moves.getRow(pawnSquare) != (colorToMove == ChessPiece.Color.WHITE ? 3 : 4)) return false;
+        if (pieceCodes[pawnSquare] != ((color ^ COLOR_MASK) | ChessPiece.Piece.PAWN.ordinal())) return false;
 
-        return validMoves;
+        return column > 0 && pieceCodes[pawnSquare - 1] == pawn || column < 7 && pieceCodes[pawnSquare + 1] == pawn;
     }
 
-    public Field getField(int row, int column) {
-        if (row < 0 || row > 7 || column < 0 || column > 7)
-            throw new IllegalArgumentException("Such position does not exist!");
+    /**
+     * Saves the state taken back by {@link #unmakeMove}, one int of flags, castling rights, en passant square and captured piece
+     * and four hash keys per move
+     * @param captured code of the captured piece
+     */
+    private void pushHistory(int captured) {
+        if (historySize == stateHistory.length) {
+            int capacity = Math.max(INITIAL_HISTORY_CAPACITY, 2 * historySize);
+
+            stateHistory = Arrays.copyOf(stateHistory, capacity);
+            keyHistory = Arrays.copyOf(keyHistory, KEYS_PER_MOVE * capacity);
+        }
+
+        int keys = KEYS_PER_MOVE * historySize;
 
-        return board[row][column];
+        keyHistory[keys] = hash;
+        keyHistory[keys + 1] = pawnHash;
+        keyHistory[keys + 2] = whitePawns;
+        keyHistory[keys + 3] = blackPawns;
+        stateHistory[historySize] = captured << CAPTURED_SHIFT | enPassantSquare + 1 << EN_PASSANT_SHIFT | castlingRights << CASTLING_SHIFT
+            | (whiteQueenStanding ? WHITE_QUEEN_STANDING : 0) | (blackQueenStanding ? BLACK_QUEEN_STANDING : 0);
+        historySize++;
     }
 
-    public Field getField(Field.Position position) {
-        return getField(position.getRow(), position.getColumn());
+    /**
+     * Restores the queen flags, castling rights and en passant square of the last saved move, the hash keys are restored by {@link #unmakeMove}
+     * @return code of the captured piece
+     */
+    private int popHistory() {
+        int state = stateHistory[--historySize];
+
+        whiteQueenStanding = (state & WHITE_QUEEN_STANDING) != 0;
+        blackQueenStanding = (state & BLACK_QUEEN_STANDING) != 0;
+        castlingRights = state >>> CASTLING_SHIFT & 0xF;
+        enPassantSquare = (state >>> EN_PASSANT_SHIFT & 0x7F) - 1;
+
+        return state >>> CAPTURED_SHIFT;
     }
 
-    public void addPiece(int row, int column, ChessPiece chessPiece) {
-        board[row][column].setChessPiece(chessPiece);
+    /**
+     * Generates valid moves of the side to move taking king safety into account
+     * @param moves buffer of at least MAX_MOVES elements the moves are written to
+     * @return number of moves written
+     */
+    public int generateMoves(int[] moves) {
+        int count = generateIntermediateMoves(moves);
+        int validCount = 0;
 
-        if(chessPiece.getPiece() == ChessPiece.Piece.QUEEN) {
-            if(chessPiece.getColor() == ChessPiece.Color.WHITE) whiteQueenStanding = true;
-            else blackQueenStanding = true;
+        for (int i = 0; i < count; i++) {
+            if (isValid(moves[i])) {
+                moves[validCount++] = moves[i];
+            }
         }
 
-        if (chessPiece.getPiece() == ChessPiece.Piece.KING) {
-            if (chessPiece.getColor() == ChessPiece.Color.WHITE) whiteKingField = getField(row, column);
-            else blackKingField = getField(row, column);
-        }
+        return validCount;
     }
 
-    public void addPiece(Field.Position position, ChessPiece chessPiece) {
-        addPiece(position.getRow(), position.getColumn(), chessPiece);
+    /**
+     * Checks whether the move leaves own king safe and does not capture a king
+     * @param move move encoded by {@link Moves}
+     * @return whether the move is valid
+     */
+    private boolean isValid(int move) {
+        if (PIECES[pieceCodes[Moves.getTo(move)] & PIECE_MASK] == ChessPiece.Piece.KING) return false;
+
+        int opposingColor = colorCode(ChessPiece.Color.getOpposingColor(colorToMove));
+
+        makeMove(move);
+
+        boolean isValid = !isAttacked(getColorToMove() == ChessPiece.Color.WHITE ? blackKingSquare : whiteKingSquare, opposingColor);
+
+        unmakeMove(move);
+
+        return isValid;
     }
 
-    public void removePiece(int row, int column) {
-        ChessPiece removedPiece = board[row][column].getChessPiece();
+    /**
+     * Converts encoded move into a move object for the user interface
+     * @param move move encoded by {@link Moves}
+     * @return move object referring to fields of this board
+     */
+    public Field.Move toMove(int move) {
+        Field from = getField(Moves.getRow(Moves.getFrom(move)), Moves.getColumn(Moves.getFrom(move)));
+        Field.Position position = from.new Position(Moves.getRow(Moves.getTo(move)), Moves.getColumn(Moves.getTo(move)));
 
-        if(removedPiece.getPiece() == ChessPiece.Piece.QUEEN) {
-            if(removedPiece.getColor() == ChessPiece.Color.WHITE) whiteQueenStanding = false;
-            else blackQueenStanding = false;
-        }
+        return from.new Move(position, from, Moves.getSpecialMove(move));
+    }
 
-        board[row][column].setChessPiece(new ChessPiece());
+    /**
+     * Zobrist hash of the piece placement and the side to move
+     * @return hash of the position
+     */
+    public long getHash() {
+        return hash;
     }
 
-    public void removePiece(Field.Position position) {
-        removePiece(position.getRow(), position.getColumn());
+    /**
+     * Zobrist hash of the pawns only, it changes only when a pawn moves, is captured or promotes
+     * @return hash of the pawn structure
+     */
+    public long getPawnHash() {
+        return pawnHash;
     }
 
-    public ChessPiece.Color getColorToMove() {
-        return colorToMove;
+    /**
+     * @param color color of the pawns
+     * @return bitboard with bit row * 8 + column set for every pawn of the color
+     */
+    public long getPawns(ChessPiece.Color color) {
+        return color == ChessPiece.Color.WHITE ? whitePawns : blackPawns;
     }
 
-    public void changeTurn() {
-        if (colorToMove == ChessPiece.Color.WHITE) colorToMove = BLACK;
-        else colorToMove = ChessPiece.Color.WHITE;
+    /**
+     * Piece of every square (row * 8 + column) as color ordinal * 8 + piece ordinal, 0 for empty squares.
+     * The array is updated in place by moves and must not be modified.
+     * @return piece codes of the board
+     */
+    byte[] getPieceCodes() {
+        return pieceCodes;
+    }
 
-        for (Field[] fieldRow : board) {
-            for (Field field : fieldRow) {
-                if (field.getChessPiece().getColor() != ChessPiece.Color.NONE) {
-                    field.turnStanding++;
-                }
-            }
-        }
+    static byte pieceCode(ChessPiece chessPiece) {
+        return chessPiece.getColor() == ChessPiece.Color.NONE ? 0 : (byte) (chessPiece.getColor().ordinal() << 3 | chessPiece.getPiece().ordinal());
     }
 
-    private void putPiecesOnStartingPositions(Field[][] board) {
-        putPawns(board);
-        putRooks(board);
-        putKnights(board);
-        putBishops(board);
-        putQueens(board);
-        putKings(board);
+    private static int colorCode(ChessPiece.Color color) {
+        return color.ordinal() << 3;
     }
 
-    private void putPawns(Field[][] board) {
-        for (Field field : board[1]) {
-            field.setChessPiece(new ChessPiece(BLACK, ChessPiece.Piece.PAWN));
-        }
+    /**
+     * @param square row * 8 + column
+     * @return piece standing on the square, NONE for an empty square
+     */
+    public ChessPiece.Piece getPiece(int square) {
+        return PIECES[pieceCodes[square] & PIECE_MASK];
+    }
+
+    /**
+     * @param square row * 8 + column
+     * @return color of the piece standing on the square, NONE for an empty square
+     */
+    public ChessPiece.Color getColor(int square) {
+        return COLORS[pieceCodes[square] >> 3];
+    }
+
+    /**
+     * Adds or removes the piece from the square in the hashes and piece codes, a square holds at most one piece
+     * so toggling the piece that leaves first and the one that arrives second keeps the codes exact
+     * @param code piece code, nothing is changed for 0
+     */
+    private void togglePiece(int code, int square) {
+        if (code != 0) {
+            long key = PIECE_KEYS[((code >> 3) - 1) * 6 + (code & PIECE_MASK) - 1][square];
 
-        for (Field field : board[6]) {
-            field.setChessPiece(new ChessPiece(ChessPiece.Color.WHITE, ChessPiece.Piece.PAWN));
+            hash ^= key;
+            pieceCodes[square] ^= code;
+
+            if (PIECES[code & PIECE_MASK] == ChessPiece.Piece.PAWN) {
+                pawnHash ^= key;
+
+                if ((code & COLOR_MASK) == colorCode(WHITE)) whitePawns ^= 1L << square;
+                else blackPawns ^= 1L << square;
+            }
         }
     }
 
-    private void putRooks(Field[][] board) {
-        board[0][0].setChessPiece(new ChessPiece(BLACK, ChessPiece.Piece.ROOK));
-        board[0][7].setChessPiece(new ChessPiece(BLACK, ChessPiece.Piece.ROOK));
-        board[7][0].setChessPiece(new ChessPiece(ChessPiece.Color.WHITE, ChessPiece.Piece.ROOK));
-        board[7][7].setChessPiece(new ChessPiece(ChessPiece.Color.WHITE, ChessPiece.Piece.ROOK));
+    public boolean isInCheck() {
+        return isAttacked(getKingSquare(colorToMove), colorCode(ChessPiece.Color.getOpposingColor(colorToMove)));
     }
 
-    private void putKnights(Field[][] board) {
-        board[0][1].setChessPiece(new ChessPiece(BLACK, ChessPiece.Piece.KNIGHT));
-        board[0][6].setChessPiece(new ChessPiece(BLACK, ChessPiece.Piece.KNIGHT));
-        board[7][1].setChessPiece(new ChessPiece(ChessPiece.Color.WHITE, ChessPiece.Piece.KNIGHT));
-        board[7][6].setChessPiece(new ChessPiece(ChessPiece.Color.WHITE, ChessPiece.Piece.KNIGHT));
+    /**
+     * Lets moves made on this board update the accumulator, which starts from the current position
+     * @param accumulator accumulator of a neural network evaluation or null for none
+     */
+    public void setAccumulator(NnueAccumulator accumulator) {
+        this.accumulator = accumulator;
+        if (accumulator != null) accumulator.reset(this);
     }
 
-    private void putBishops(Field[][] board) {
-        board[0][2].setChessPiece(new ChessPiece(BLACK, ChessPiece.Piece.BISHOP));
-        board[0][5].setChessPiece(new ChessPiece(BLACK, ChessPiece.Piece.BISHOP));
-        board[7][2].setChessPiece(new ChessPiece(ChessPiece.Color.WHITE, ChessPiece.Piece.BISHOP));
-        board[7][5].setChessPiece(new ChessPiece(ChessPiece.Color.WHITE, ChessPiece.Piece.BISHOP));
+    /**
+     * @return square (row * 8 + column) of the king of the color
+     */
+    public int getKingSquare(ChessPiece.Color color) {
+        return color == ChessPiece.Color.WHITE ? whiteKingSquare : blackKingSquare;
     }
 
-    private void putQueens(Field[][] board) {
-        board[0][3].setChessPiece(new ChessPiece(BLACK, ChessPiece.Piece.QUEEN));
-        board[7][3].setChessPiece(new ChessPiece(ChessPiece.Color.WHITE, ChessPiece.Piece.QUEEN));
+    public int getPieceCount() {
+        return pieceCount;
+    }
+
+    public boolean isEndgame() {
+        return !whiteQueenStanding && !blackQueenStanding;
+    }
+
+    public ComputerAdversary getAdversary() {
+        return adversary;
     }
 
-    private void putKings(Field[][] board) {
-        board[0][4].setChessPiece(new ChessPiece(BLACK, ChessPiece.Piece.KING));
-        board[7][4].setChessPiece(new ChessPiece(ChessPiece.Color.WHITE, ChessPiece.Piece.KING));
+    public List<Field.Move> getAllValidMoves(ChessBoard.ChessPiece.Color color) {
+        List<Field.Move> validMoves = new ArrayList<>();
+
+        if (color != colorToMove) return validMoves;
+
+        int[] moves = new int[MAX_MOVES];
+        int count = generateMoves(moves);
 
-        whiteKingField = getField(7, 4);
-        blackKingField = getField(0, 4);
+        for (int i = 0; i < count; i++) {
+            validMoves.add(toMove(moves[i]));
+        }
+
+        return validMoves;
     }
 
     /**
-     * Represents a single field on the chess board
+     * @return view of the square, reading the board when it is used
      */
-    class Field {
-        private final Position position;
-        private int turnStanding;
-        private ChessPiece chessPiece;
+    public Field getField(int row, int column) {
+        if (row < 0 || row > 7 || column < 0 || column > 7)
+            throw new IllegalArgumentException("Such position does not exist!");
 
-        public Field(int row, int column, ChessPiece chessPiece) {
-            if (chessPiece == null) throw new IllegalArgumentException();
+        return new Field(row, column);
+    }
 
-            this.position = new Position(row, column);
-            this.chessPiece = chessPiece;
-        }
+    public Field getField(Field.Position position) {
+        return getField(position.getRow(), position.getColumn());
+    }
 
-        public Field(Field field) {
-            position = new Position(field.getPosition());
-            turnStanding = field.turnStanding;
-            chessPiece = new ChessPiece(field.getChessPiece());
-        }
+    public void addPiece(int row, int column, ChessPiece chessPiece) {
+        ensureOwnSquares();
 
-        public Position getPosition() {
-            return position;
-        }
+        int square = Moves.square(row, column);
+        int code = pieceCode(chessPiece);
 
-        public ChessPiece getChessPiece() {
-            return chessPiece;
-        }
+        if(pieceCodes[square] != 0) pieceCount--;
+        if(code != 0) pieceCount++;
 
-        public void setChessPiece(ChessPiece chessPiece) {
-            if (chessPiece == null) throw new IllegalArgumentException();
-            this.chessPiece = chessPiece;
+        togglePiece(pieceCodes[square], square);
+        togglePiece(code, square);
+        if (chessPiece.getMovesMade() != 0 || !isCastlingPiece(code, square)) setCastlingRights(castlingRights & CASTLING_MASKS[square]);
+        setEnPassantSquare(NO_SQUARE);
+        if (accumulator != null) accumulator.invalidate();
+
+        if(chessPiece.getPiece() == ChessPiece.Piece.QUEEN) {
+            if(chessPiece.getColor() == ChessPiece.Color.WHITE) whiteQueenStanding = true;
+            else blackQueenStanding = true;
         }
 
-        public void setTurnStanding(int turnStanding) {
-            this.turnStanding = turnStanding;
+        if (chessPiece.getPiece() == ChessPiece.Piece.KING) {
+            if (chessPiece.getColor() == ChessPiece.Color.WHITE) whiteKingSquare = square;
+            else blackKingSquare = square;
         }
+    }
 
-        /**
-         * Lst of valid moves taking king safety into account
-         * @return list mentioned
-         */
-        public List<Move> getValidMoves() {
-            List<Move> validMoves = new ArrayList<>();
+    public void addPiece(Field.Position position, ChessPiece chessPiece) {
+        addPiece(position.getRow(), position.getColumn(), chessPiece);
+    }
+
+    public void removePiece(int row, int column) {
+        ensureOwnSquares();
+
+        int square = Moves.square(row, column);
+        int code = pieceCodes[square];
 
-            ChessPiece.Color opposingColor = ChessPiece.Color.getOpposingColor(chessPiece.getColor());
+        if(code != 0) pieceCount--;
 
-            for (Move move : intermediateMoves()) {
+        togglePiece(code, square);
+        setCastlingRights(castlingRights & CASTLING_MASKS[square]);
+        setEnPassantSquare(NO_SQUARE);
 
-                ChessPiece attackedPiece = getField(move.getPosition()).getChessPiece();
+        if(PIECES[code & PIECE_MASK] == ChessPiece.Piece.QUEEN) {
+            if((code & COLOR_MASK) == colorCode(WHITE)) whiteQueenStanding = false;
+            else blackQueenStanding = false;
+        }
 
-                makeMove(move);
+        if (accumulator != null) accumulator.invalidate();
+    }
 
-                Position kingPosition = (getColorToMove() == ChessPiece.Color.WHITE ? blackKingField : whiteKingField).getPosition();
+    public void removePiece(Field.Position position) {
+        removePiece(position.getRow(), position.getColumn());
+    }
 
-                if(!kingPosition.isAttacked(opposingColor) && attackedPiece.getPiece() != ChessPiece.Piece.KING) {
-                    validMoves.add(move);
-                }
+    public ChessPiece.Color getColorToMove() {
+        return colorToMove;
+    }
 
-                unmakeMove(move);
-            }
+    public void changeTurn() {
+        if (colorToMove == ChessPiece.Color.WHITE) colorToMove = BLACK;
+        else colorToMove = ChessPiece.Color.WHITE;
 
-            return validMoves;
-        }
+        hash ^= SIDE_KEY;
+    }
 
-        /**
-         * List of moves that can be made from this field not taking king safety into account
-         * @return List of said moves
-         */
-        private List<Move> intermediateMoves() {
-            if(chessPiece.getColor() != colorToMove) {
-                return new ArrayList<>();
-            }
+    /**
+     * Moves of the side to move not taking king safety into account
+     * @param moves buffer the moves are written to
+     * @return number of moves written
+     */
+    private int generateIntermediateMoves(int[] moves) {
+        int count = 0;
+        int color = colorCode(colorToMove);
+
+        for (int square = 0; square < 64; square++) {
+            int code = pieceCodes[square];
+
+            if ((code & COLOR_MASK) != color) continue;
 
-            switch(chessPiece.getPiece()) {
+            switch (PIECES[code & PIECE_MASK]) {
                 case PAWN:
-                    return generatePawnMoves();
+                    count = generatePawnMoves(square, color, moves, count);
+                    break;
                 case BISHOP:
-                    return generateBishopMoves();
+                    count = generateSlidingMoves(square, color, FIRST_DIAGONAL, FIRST_STRAIGHT, moves, count);
+                    break;
                 case KNIGHT:
-                    return generateKnightMoves();
+                    count = generateStepMoves(square, color, KNIGHT_TARGETS, moves, count);
+                    break;
                 case ROOK:
-                    return generateRookMoves();
+                    count = generateSlidingMoves(square, color, FIRST_STRAIGHT, DIRECTIONS.length, moves, count);
+                    break;
                 case QUEEN:
-                    return generateQueenMoves();
+                    count = generateSlidingMoves(square, color, FIRST_DIAGONAL, DIRECTIONS.length, moves, count);
+                    break;
                 case KING:
-                    return generateKingMoves();
+                    count = generateKingMoves(square, color, moves, count);
+                    break;
                 default:
-                    return new ArrayList<>();
             }
         }
 
-        /** Method that returns all possible moves that the pawn can make
-         * @return All possible moves that the pawn can make not taking king safety into account
-         */
-        private List<Move> generatePawnMoves() {
-            List<Move> possibleMoves = new ArrayList<>();
-            int moveDirection = chessPiece.getColor() == ChessPiece.Color.WHITE ? -1 : 1;
-            Position currentPosition = getPosition();
-            Move proposedMove;
+        return count;
+    }
 
-            //Move one square forward
-            proposedMove = new Move(new Position(currentPosition.getRow() + moveDirection, currentPosition.getColumn()), getField(currentPosition), ChessPiece.SpecialMove.NON_ATTACKING);
+    /**
+     * Writes all moves that the pawn can make not taking king safety into account
+     * @return number of moves in the buffer after writing
+     */
+    private int generatePawnMoves(int from, int color, int[] moves, int count) {
+        boolean isWhite = color == colorCode(WHITE);
+        int forward = isWhite ? -8 : 8;
+        int row = Moves.getRow(from);
+        int column = Moves.getColumn(from);
+        int nextRow = row + (isWhite ? -1 : 1);
+        int next = from + forward;
+
+        if (nextRow < 0 || nextRow > 7) return count;
+
+        //Move one square forward, then two squares forward
+        if (pieceCodes[next] == 0) {
+            moves[count++] = pawnMove(from, next, ChessPiece.SpecialMove.NON_ATTACKING);
+
+            if (row == (isWhite ? 6 : 1) && pieceCodes[next + forward] == 0) {
+                moves[count++] = Moves.encode(from, next + forward, ChessPiece.SpecialMove.NON_ATTACKING);
+            }
+        }
 
+        int opposingColor = color ^ COLOR_MASK;
 
-            if (proposedMove.getPosition().isValid()  && getField(proposedMove.getPosition()).getChessPiece().getColor() == ChessPiece.Color.NONE) {
-                if(proposedMove.getPosition().getRow() == 0 || proposedMove.getPosition().getRow() == 7) {
-                    proposedMove.setSpecialMove(ChessPiece.SpecialMove.PROMOTION);
-                }
+        for (int direction = -1; direction <= 1; direction += 2) {
+            if (column + direction < 0 || column + direction > 7) continue;
 
-                possibleMoves.add(proposedMove);
+            //Capture
+            if ((pieceCodes[next + direction] & COLOR_MASK) == opposingColor) {
+                moves[count++] = pawnMove(from, next + direction, ChessPiece.SpecialMove.NONE);
             }
 
-            //Move two squares forward
-            proposedMove = new Move(new Position(currentPosition.getRow() + 2 * moveDirection, currentPosition.getColumn()), getField(currentPosition), ChessPiece.SpecialMove.NON_ATTACKING);
-
-            if(chessPiece.getMovesMade() == 0 && !possibleMoves.isEmpty() && getField(proposedMove.getPosition()).getChessPiece().getColor() == ChessPiece.Color.NONE) {
-                possibleMoves.add(proposedMove);
+            //En Passant
+            if (next + direction == enPassantSquare && row == (isWhite ? 3 : 4)) {
+                moves[count++] = Moves.encode(from, next + direction, ChessPiece.SpecialMove.EN_PASSANT);
             }
+        }
 
-            //Capture
-            if(pawnCanCapture(-1)) {
-                proposedMove = new Move(new Position(currentPosition.getRow() + moveDirection, currentPosition.getColumn() - 1), getField(currentPosition));
-
-                if(proposedMove.getPosition().getRow() == 0 || proposedMove.getPosition().getRow() == 7) {
-                    proposedMove.setSpecialMove(ChessPiece.SpecialMove.PROMOTION);
-                }
+        return count;
+    }
 
-                possibleMoves.add(proposedMove);
-            }
+    private static int pawnMove(int from, int to, ChessPiece.SpecialMove specialMove) {
+        if (Moves.getRow(to) == 0 || Moves.getRow(to) == 7) {
+            return Moves.encode(from, to, ChessPiece.SpecialMove.PROMOTION, ChessPiece.Piece.QUEEN);
+        }
 
-            if(pawnCanCapture(1)) {
-                proposedMove = new Move(new Position(currentPosition.getRow() + moveDirection, currentPosition.getColumn() + 1), getField(currentPosition));
+        return Moves.encode(from, to, specialMove);
+    }
 
-                if(proposedMove.getPosition().getRow() == 0 || proposedMove.getPosition().getRow() == 7) {
-                    proposedMove.setSpecialMove(ChessPiece.SpecialMove.PROMOTION);
-                }
+    /**
+     * Writes moves of a piece moving any number of squares along the rays of the directions from first to last, exclusive
+     * @return number of moves in the buffer after writing
+     */
+    private int generateSlidingMoves(int from, int color, int firstDirection, int lastDirection, int[] moves, int count) {
+        for (int direction = firstDirection; direction < lastDirection; direction++) {
+            for (int target : RAYS[from][direction]) {
+                int code = pieceCodes[target];
 
-                possibleMoves.add(proposedMove);
-            }
+                if ((code & COLOR_MASK) == color) break;
 
-            //En Passant
-            if(pawnCanEnPassant(-1)) {
-                proposedMove = new Move(new Position(currentPosition.getRow() + moveDirection, currentPosition.getColumn() - 1),getField(currentPosition));
-                proposedMove.setSpecialMove(ChessPiece.SpecialMove.EN_PASSANT);
+                moves[count++] = Moves.encode(from, target, ChessPiece.SpecialMove.NONE);
 
-                possibleMoves.add(proposedMove);
+                if (code != 0) break;
             }
+        }
 
-            if(pawnCanEnPassant(1)) {
-                proposedMove = new Move(new Position(currentPosition.getRow() + moveDirection, currentPosition.getColumn() + 1),getField(currentPosition));
-                proposedMove.setSpecialMove(ChessPiece.SpecialMove.EN_PASSANT);
+        return count;
+    }
 
-                possibleMoves.add(proposedMove);
+    /**
+     * Writes moves of a piece moving to one of its precomputed targets
+     * @return number of moves in the buffer after writing
+     */
+    private int generateStepMoves(int from, int color, int[][] targets, int[] moves, int count) {
+        for (int target : targets[from]) {
+            if ((pieceCodes[target] & COLOR_MASK) != color) {
+                moves[count++] = Moves.encode(from, target, ChessPiece.SpecialMove.NONE);
             }
-
-            return possibleMoves;
         }
 
-        /**
-         * Tests whether pawn can capture a piece in diagonal specified by direction
-         * @param direction -1 is left diagonal and 1 is right diagonal
-         * @return whether pawn can capture a piece in specified diagonal
-         */
-        private boolean pawnCanCapture(int direction) {
-            int moveDirection = chessPiece.getColor() == ChessPiece.Color.WHITE ? -1 : 1;
-            ChessPiece.Color opposingColor = ChessPiece.Color.getOpposingColor(chessPiece.getColor());
+        return count;
+    }
 
-            Position attackedPosition = new Position(getPosition().getRow() + moveDirection, getPosition().getColumn() + direction);
+    private int generateKingMoves(int from, int color, int[] moves, int count) {
+        int row = Moves.getRow(from);
 
-            if (attackedPosition.isValid() && getField(attackedPosition).getChessPiece().getColor() == opposingColor) {
-                return true;
-            }
+        count = generateStepMoves(from, color, KING_TARGETS, moves, count);
 
-            return false;
+        if (canCastle(from, color, -1)) {
+            moves[count++] = Moves.encode(from, Moves.square(row, 2), ChessPiece.SpecialMove.CASTLE);
         }
 
-        /**
-         * Tests whether pawn can make an en passant move
-         * @param direction direction to make an en passant move
-         * @return whether en passant move is possible
-         */
-        private boolean pawnCanEnPassant(int direction) {
-            ChessPiece.Color opposingColor = ChessPiece.Color.getOpposingColor(chessPiece.getColor());
+        if (canCastle(from, color, 1)) {
+            moves[count++] = Moves.encode(from, Moves.square(row, 6), ChessPiece.SpecialMove.CASTLE);
+        }
 
-            Position attackedPosition = new Position(getPosition().getRow(), getPosition().getColumn() + direction);
+        return count;
+    }
 
-            if (attackedPosition.isValid()) {
-                ChessPiece attackedPiece = getField(attackedPosition).getChessPiece();
+    /**
+     * Checks whether king can castle in specified direction: the right is kept, the squares between king and rook are empty
+     * and the king is not in check and does not pass or land on an attacked square
+     * @param direction Direction of the castle(-1 to the left, 1 - to the right)
+     * @return whether king can castle in the specified direction
+     */
+    private boolean canCastle(int kingSquare, int color, int direction) {
+        boolean isWhite = color == colorCode(WHITE);
+        int right = direction == -1 ? (isWhite ? WHITE_QUEEN_SIDE : BLACK_QUEEN_SIDE) : (isWhite ? WHITE_KING_SIDE : BLACK_KING_SIDE);
+        int row = isWhite ? 7 : 0;
+        int opposingColor = color ^ COLOR_MASK;
 
-                if(attackedPiece.getColor() == opposingColor && chessPiece.getMovesMade() == 1 && chessPiece.getPiece() == ChessPiece.Piece.PAWN) {
-                    return opposingColor == BLACK && attackedPosition.getRow() == 3 || opposingColor == ChessPiece.Color.WHITE && attackedPosition.getRow() == 4;
-                }
-            }
+        if((castlingRights & right) == 0 || kingSquare != Moves.square(row, 4)) return false;
 
-            return false;
+        for (int column = direction == -1 ? 1 : 5; column <= (direction == -1 ? 3 : 6); column++) {
+            if (pieceCodes[Moves.square(row, column)] != 0) return false;
         }
 
-        /**
-         * List of moves that can be made from this field by a rook not taking king safety into account
-         * @return list mentioned
-         */
-        private List<Move> generateBishopMoves() {
-            List<Move> possibleMoves = new ArrayList<>();
-
-            possibleMoves.addAll(checkDiagonals(8,0));
-            possibleMoves.addAll(checkDiagonals(8, 1));
-            possibleMoves.addAll(checkDiagonals(8, 2));
-            possibleMoves.addAll(checkDiagonals(8, 3));
-
-            return possibleMoves;
+        for (int column = 4; column != 4 + 3 * direction; column += direction) {
+            if (isAttacked(Moves.square(row, column), opposingColor)) return false;
         }
 
-        /** List of moves that can be made from this field by a knight not taking king safety into account
-         * @return list mentioned
-         */
-        private List<Move> generateKnightMoves() {
-            List<Move> possibleMoves = new ArrayList<>();
-            Position proposedPosition;
-
-            for (int row = -2; row < 3; row++) {
-                for (int column = -2; column < 3; column++) {
-                    if(Math.abs(row) + Math.abs(column) == 3) {
-                        proposedPosition = new Position(getPosition().getRow() + row, getPosition().getColumn() + column);
-
-                        if (proposedPosition.isValid() && getField(proposedPosition).getChessPiece().getColor() != chessPiece.getColor()) {
-                            possibleMoves.add(new Move(proposedPosition, getField(getPosition())));
-                        }
-                    }
-                }
-            }
+        return true;
+    }
 
-            return possibleMoves;
-        }
+    /**
+     * @return whether the piece is a king or rook standing where it starts and castles from
+     */
+    private static boolean isCastlingPiece(int code, int square) {
+        int row = (code & COLOR_MASK) == colorCode(WHITE) ? 7 : 0;
+        ChessPiece.Piece piece = PIECES[code & PIECE_MASK];
 
-        /** List of moves that can be made from this field by a rook not taking king safety into account
-         * @return list mentioned
-         */
-        private List<Move> generateRookMoves() {
-            List<Move> possibleMoves = new ArrayList<>();
-            possibleMoves.addAll(checkRows(8, 1));
-            possibleMoves.addAll(checkRows(8, -1));
-            possibleMoves.addAll(checkColumns(8, 1));
-            possibleMoves.addAll(checkColumns(8, -1));
+        if (Moves.getRow(square) != row) return false;
 
-            return possibleMoves;
-        }
+        return piece == ChessPiece.Piece.KING && Moves.getColumn(square) == 4
+            || piece == ChessPiece.Piece.ROOK && (Moves.getColumn(square) == 0 || Moves.getColumn(square) == 7);
+    }
 
-        /** List of moves that can be made from this field by a queen not taking king safety into account
-         * @return list mentioned
-         */
-        private List<Move> generateQueenMoves() {
-            List<Move> possibleMoves = new ArrayList<>();
+    /**
+     * @param color color of the king
+     * @param isKingSide whether the right is to castle on the king side
+     * @return whether the castling right is kept, castling can still be prevented by pieces or attacks
+     */
+    public boolean hasCastlingRight(ChessPiece.Color color, boolean isKingSide) {
+        int right = color == ChessPiece.Color.WHITE ? (isKingSide ? WHITE_KING_SIDE : WHITE_QUEEN_SIDE) : (isKingSide ? BLACK_KING_SIDE : BLACK_QUEEN_SIDE);
+
+        return (castlingRights & right) != 0;
+    }
 
-            possibleMoves.addAll(generateBishopMoves());
-            possibleMoves.addAll(generateRookMoves());
+    /**
+     * @return square (row * 8 + column) a pawn capturing en passant moves to, NO_SQUARE if no pawn can
+     */
+    public int getEnPassantSquare() {
+        return enPassantSquare;
+    }
 
-            return possibleMoves;
+    /**
+     * Checks whether specified square is attacked by any piece of specified color
+     * @param color Color code of attacking pieces
+     * @return whether the square is attacked
+     */
+    private boolean isAttacked(int square, int color) {
+        int pawnRow = Moves.getRow(square) + (color == colorCode(WHITE) ? 1 : -1);
+        int column = Moves.getColumn(square);
+        int pawn = color | ChessPiece.Piece.PAWN.ordinal();
+
+        if (pawnRow >= 0 && pawnRow <= 7) {
+            if (column > 0 && pieceCodes[Moves.square(pawnRow, column - 1)] == pawn) return true;
+            if (column < 7 && pieceCodes[Moves.square(pawnRow, column + 1)] == pawn) return true;
         }
 
-        /** List of moves that can be made from this field by a king not taking its safety into account
-         * @return list mentioned above
-         */
-        private List<Move> generateKingMoves() {
-            List<Move> possibleMoves = new ArrayList<>();
-
-            for (int row = -1; row < 2; row++) {
-                for (int column = -1; column < 2; column++) {
-                    if (row != 0 || column != 0) {
-                        Position proposedPosition = new Position(getPosition().getRow() + row, getPosition().getColumn() + column);
-
-                        if(proposedPosition.isValid() && getField(proposedPosition).getChessPiece().getColor() != chessPiece.getColor()) {
-                            possibleMoves.add(new Move(proposedPosition, getField(getPosition())));
-                        }
-                    }
-                }
-            }
+        return isAttackedByStep(square, color | ChessPiece.Piece.KNIGHT.ordinal(), KNIGHT_TARGETS)
+            || isAttackedByStep(square, color | ChessPiece.Piece.KING.ordinal(), KING_TARGETS)
+            || isAttackedBySliding(square, color | ChessPiece.Piece.BISHOP.ordinal(), color | ChessPiece.Piece.QUEEN.ordinal(), FIRST_DIAGONAL, FIRST_STRAIGHT)
+            || isAttackedBySliding(square, color | ChessPiece.Piece.ROOK.ordinal(), color | ChessPiece.Piece.QUEEN.ordinal(), FIRST_STRAIGHT, DIRECTIONS.length);
+    }
 
-            if (canCastle(-1)) {
-                Position movePosition = new Position(getPosition().getRow(), 2);
+    private boolean isAttackedByStep(int square, int attacker, int[][] targets) {
+        for (int target : targets[square]) {
+            if (pieceCodes[target] == attacker) return true;
+        }
 
-                possibleMoves.add(new Move(movePosition,this, ChessPiece.SpecialMove.CASTLE));
-            }
+        return false;
+    }
 
-            if(canCastle(1)) {
-                Position movePosition = new Position(getPosition().getRow(), 6);
+    /**
+     * Checks whether specified square is attacked along the rays of the directions by the piece or a queen
+     * @param attacker code of the piece other than queen moving in these directions
+     * @return whether the square is attacked
+     */
+    private boolean isAttackedBySliding(int square, int attacker, int queen, int firstDirection, int lastDirection) {
+        for (int direction = firstDirection; direction < lastDirection; direction++) {
+            for (int target : RAYS[square][direction]) {
+                int code = pieceCodes[target];
 
-                possibleMoves.add(new Move(movePosition, this, ChessPiece.SpecialMove.CASTLE));
+                if (code != 0) {
+                    if (code == attacker || code == queen) return true;
+                    break;
+                }
             }
-
-            return possibleMoves;
         }
 
-        /**
-         * Checks whether king can castle in specified direction
-         * @param direction Direction of the castle(-1 to the left, 1 - to the right)
-         * @return whether king can castle in the specified direction
-         */
-        private boolean canCastle(int direction) {
-            int row = chessPiece.getColor() == ChessPiece.Color.WHITE ? 7 : 0;
-            int startingColumn = direction == -1 ? 1 : 5;
-            int endingColumn = direction == -1 ? 3 : 6;
-            ChessPiece rook = (direction == -1 ? getField(row, 0) : getField(row, 7)).getChessPiece();
-            ChessPiece.Color opposingColor = ChessPiece.Color.getOpposingColor(chessPiece.getColor());
-
-            if(getChessPiece().getMovesMade() != 0) return false;
-            if(!rook.isOfType(chessPiece.getColor(), ChessPiece.Piece.ROOK)) return false;
-            if(rook.getMovesMade() != 0) return false;
-
-            for (int column = startingColumn; column <= endingColumn; column++) {
-                Field currentField = getField(row, column);
-
-                if (currentField.getChessPiece().getColor() != ChessPiece.Color.NONE || currentField.getPosition().isAttacked(opposingColor)) {
-                    return false;
-                }
-            }
+        return false;
+    }
 
-            return true;
-        }
+    private static boolean isOnBoard(int row, int column) {
+        return row >= 0 && row <= 7 && column >= 0 && column <= 7;
+    }
 
-        /**
-         * Method that returns all possible moves that the piece can make following specified diagonal
-         *
-         * @param length   Maximum length of diagonal move
-         * @param diagonal Diagonal to follow( 0 - lower left, 1 - upper left, 2 - lower right, 3 - upper right)
-         * @return list of valid moves for piece following specified diagonal of specified length
-         */
-        private List<Move> checkDiagonals(int length, int diagonal) {
+    /**
+     * Moves are not counted by the board, kings and rooks keeping a castling right and pawns on their starting rows
+     * count as unmoved and other pieces as moved once
+     * @return number of moves reported for the piece on the square
+     */
+    private int movesMade(int square) {
+        int code = pieceCodes[square];
 
-            List<Move> diagonalMoves = new ArrayList<>();
-            int rowDirection = diagonal / 2 == 0 ? -1 : 1;
-            int columnDirection = diagonal % 2 == 0 ? -1 : 1;
-            Move currentMove = new Move(new Position(position.row + rowDirection, position.column + columnDirection), this);
-            Field currentField;
-            int counter = 0;
+        if (code == 0) return 0;
 
-            while (currentMove.getPosition().isValid() && counter < length) {
-                currentField = getField(currentMove.getPosition());
+        if (PIECES[code & PIECE_MASK] == ChessPiece.Piece.PAWN) {
+            return Moves.getRow(square) == ((code & COLOR_MASK) == colorCode(WHITE) ? 6 : 1) ? 0 : 1;
+        }
 
-                if (currentField.getChessPiece().getColor() == ChessPiece.Color.NONE) {
-                    diagonalMoves.add(currentMove);
-                } else if (currentField.getChessPiece().getColor() == chessPiece.getColor()) {
-                    break;
-                } else {
-                    diagonalMoves.add(currentMove);
-                    break;
-                }
+        return isCastlingPiece(code, square) && (castlingRights & ~CASTLING_MASKS[square]) != 0 ? 0 : 1;
+    }
 
+    /**
+     * View of a single field on the chess board for the user interface
+     */
+    class Field {
+        private final Position position;
 
-                counter++;
-                currentMove = new Move(new Position(currentField.getPosition().getRow() + rowDirection, currentField.getPosition().getColumn() + columnDirection), this);
-            }
+        public Field(int row, int column) {
+            this.position = new Position(row, column);
+        }
 
-            return diagonalMoves;
+        public Position getPosition() {
+            return position;
         }
 
         /**
-         * Method that returns all possible moves that the piece can make following specified row
-         *
-         * @param length    Maximum length of the move in this direction
-         * @param direction Direction of the move(1 - means to the right, -1 means to the left)
-         * @return All possible moves that can me made in this direction of that length
+         * @return copy of the piece standing on the field, changing it does not change the board
          */
-        private List<Move> checkRows(int length, int direction) {
-            List<Move> rowMoves = new ArrayList<>();
-            Move currentMove = new Move(new Position(position.row, position.column + direction), this);
-            int counter = 0;
-            Field currentField;
-
-            while (currentMove.getPosition().isValid() && counter < length) {
-                currentField = getField(currentMove.getPosition());
-
-                if (currentField.getChessPiece().getColor() == ChessPiece.Color.NONE) {
-                    rowMoves.add(currentMove);
-                } else if (currentField.getChessPiece().getColor() == chessPiece.getColor()) {
-                    break;
-                } else {
-                    rowMoves.add(currentMove);
-                    break;
-                }
-
+        public ChessPiece getChessPiece() {
+            int square = position.getSquare();
 
-                counter++;
-                currentMove = new Move(new Position(currentField.getPosition().getRow(), currentField.getPosition().getColumn() + direction), this);
-            }
+            return new ChessPiece(COLORS[pieceCodes[square] >> 3], PIECES[pieceCodes[square] & PIECE_MASK], movesMade(square));
+        }
 
-            return rowMoves;
+        public void setChessPiece(ChessPiece chessPiece) {
+            if (chessPiece == null) throw new IllegalArgumentException();
+            addPiece(position, chessPiece);
         }
 
         /**
-         * Method that returns all possible moves that the piece can make following specified column
-         *
-         * @param length    Maximum length of the move in this direction
-         * @param direction Direction of the move(1 - means up, -1 means down)
-         * @return All possible moves that can me made in this direction of that length
+         * Lst of valid moves taking king safety into account
+         * @return list mentioned
          */
-        private List<Move> checkColumns(int length, int direction) {
-            List<Move> columnMoves = new ArrayList<>();
-            Move currentMove = new Move(new Position(position.getRow() + direction, position.getColumn()), this);
-            Field currentField;
-            int counter = 0;
-
-            while (currentMove.getPosition().isValid() && counter < length) {
-                currentField = getField(currentMove.getPosition());
-
-                if (currentField.getChessPiece().getColor() == ChessPiece.Color.NONE) {
-                    columnMoves.add(currentMove);
-                } else if (currentField.getChessPiece().getColor() == chessPiece.getColor()) {
-                    break;
-                } else {
-                    columnMoves.add(currentMove);
-                    break;
-                }
+        public List<Move> getValidMoves() {
+            List<Move> validMoves = new ArrayList<>();
+            int[] moves = new int[MAX_MOVES];
+            int count = generateMoves(moves);
+            int square = position.getSquare();
 
-                counter++;
-                currentMove = new Move(new Position(currentField.getPosition().getRow() + direction, currentField.getPosition().getColumn()), this);
+            for (int i = 0; i < count; i++) {
+                if (Moves.getFrom(moves[i]) == square) {
+                    validMoves.add(toMove(moves[i]));
+                }
             }
 
-            return columnMoves;
+            return validMoves;
         }
 
         /**
@@ -722,8 +1181,8 @@ public class ChessBoard {
                 this.column = column;
             }
 
-            private boolean isValid() {
-                return row >= 0 && row <= 7 && column >= 0 && column <= 7;
+            private int getSquare() {
+                return Moves.square(row, column);
             }
 
             public String toString() {
@@ -738,119 +1197,12 @@ public class ChessBoard {
 
                 return otherPosition.row == row && otherPosition.column == column;
             }
-
-            private boolean isAttacked(ChessPiece.Color color) {
-                return isAttackedByPawn(color) || isAttackedByKing(color) || isAttackedByPiece(color, ChessPiece.Piece.BISHOP)
-                   ||  isAttackedByPiece(color, ChessPiece.Piece.KNIGHT) || isAttackedByPiece(color, ChessPiece.Piece.ROOK)
-                   ||  isAttackedByPiece(color, ChessPiece.Piece.QUEEN);
-            }
-
-            /**
-             * Checks whether this position is attacked by a pawn of specified color
-             * @param color Color of attacking piece
-             * @return whether this position is attacked by a pawn of specified color
-             */
-            private boolean isAttackedByPawn(ChessPiece.Color color) {
-                int startingDiagonal = color == WHITE ? 0 : 1;
-
-                for(int direction = startingDiagonal; direction < 4 ; direction+= 2) {
-                    if(isAttackedDiagonally(color, direction)) {
-                        return true;
-                    }
-                }
-
-                return false;
-            }
-
-            /**
-             * Checks whether this position is attacked by a piece of color diagonally
-             * @param color Color of attacking pawn
-             * @param direction Which diagonal to check(0 - upper right, 1 - lower right, 2 - upper left, 3 - lower left)
-             * @return whether this position is attacked by a pawn of specified color in specified direction
-             */
-            private boolean isAttackedDiagonally(ChessPiece.Color color, int direction) {
-                int rowDirection = direction % 2 == 0 ? 1 : -1;
-                int columnDirection = direction / 2 == 0  ? 1 : -1;
-
-                Position checkedPosition = new Position(getRow() + rowDirection, getColumn() + columnDirection);
-
-                if(checkedPosition.isValid()) {
-                    ChessPiece attackedPiece = getField(checkedPosition).getChessPiece();
-
-                    return attackedPiece.isOfType(color, ChessPiece.Piece.PAWN);
-                }
-
-                return false;
-            }
-
-            /**
-             * Checks whether this position is attacked by a king of specified color
-             * @param color Color of attacking king
-             * @return whether this position is attacked by a king of specified color
-             */
-            private boolean isAttackedByKing(ChessPiece.Color color) {
-                for (int row = -1; row < 2; row++) {
-                    for (int column = -1; column < 2; column++) {
-                        if (row != 0 || column != 0) {
-                            Position checkedPosition = new Position(getRow() + row, getColumn() + column);
-
-                            if (checkedPosition.isValid()) {
-                                ChessPiece attackedPiece = getField(checkedPosition).getChessPiece();
-
-                                if (attackedPiece.isOfType(color, ChessPiece.Piece.KING)) {
-                                    return true;
-                                }
-                            }
-                        }
-                    }
-                }
-
-                return false;
-            }
-
-            /**
-             * Checks whether this position is attacked by a piece of specified color and piece type
-             * @param color Color of attacking piece
-             * @param piece Type of attacking piece
-             * @return whether this position is attacked by a specified chess piece
-             */
-            private boolean isAttackedByPiece(ChessPiece.Color color, ChessPiece.Piece piece) {
-                List<Move> possibleMoves;
-
-                switch(piece) {
-                    case KNIGHT:
-                        possibleMoves = getField(this).generateKnightMoves();
-                        break;
-                    case BISHOP:
-                        possibleMoves = getField(this).generateBishopMoves();
-                        break;
-                    case ROOK:
-                        possibleMoves = getField(this).generateRookMoves();
-                        break;
-                    case QUEEN:
-                        possibleMoves = getField(this).generateQueenMoves();
-                        break;
-                    default:
-                        possibleMoves = new ArrayList<>();
-                }
-
-                for (Move move : possibleMoves) {
-                    ChessPiece attackedPiece = getField(move.getPosition()).getChessPiece();
-
-                    if (attackedPiece.isOfType(color, piece)) {
-                        return true;
-                    }
-                }
-
-                return false;
-            }
         }
 
         class Move {
             private final Field from;
             private final Position position;
             private ChessPiece.SpecialMove specialMove;
-            private int guessedValue;
 
             public Move(Position position, Field from) {
                 this.position = position;
@@ -878,14 +1230,58 @@ public class ChessBoard {
             public void setSpecialMove(ChessPiece.SpecialMove specialMove) {
                 this.specialMove = specialMove;
             }
+        }
+    }
 
-            public int getGuessedValue() {
-                return guessedValue;
-            }
+    /**
+     * Immutable position taken by {@link #snapshot()}, boards created from it share its squares until they change
+     */
+    public static final class Snapshot {
+        private final byte[] pieceCodes;
+        private final ComputerAdversary adversary;
+        private final ChessPiece.Color colorToMove;
+        private final long hash;
+        private final long pawnHash;
+        private final long whitePawns;
+        private final long blackPawns;
+        private final boolean whiteQueenStanding;
+        private final boolean blackQueenStanding;
+        private final int whiteKingSquare;
+        private final int blackKingSquare;
+        private final int pieceCount;
+        private final int castlingRights;
+        private final int enPassantSquare;
+
+        private Snapshot(ChessBoard chessBoard) {
+            pieceCodes = chessBoard.pieceCodes;
+            adversary = chessBoard.adversary;
+            colorToMove = chessBoard.colorToMove;
+            hash = chessBoard.hash;
+            pawnHash = chessBoard.pawnHash;
+            whitePawns = chessBoard.whitePawns;
+            blackPawns = chessBoard.blackPawns;
+            whiteQueenStanding = chessBoard.whiteQueenStanding;
+            blackQueenStanding = chessBoard.blackQueenStanding;
+            whiteKingSquare = chessBoard.whiteKingSquare;
+            blackKingSquare = chessBoard.blackKingSquare;
+            pieceCount = chessBoard.pieceCount;
+            castlingRights = chessBoard.castlingRights;
+            enPassantSquare = chessBoard.enPassantSquare;
+        }
 
-            public void setGuessedValue(int guessedValue) {
-                this.guessedValue = guessedValue;
-            }
+        /**
+         * @return new board of the position, each call gives an independent board
+         */
+        public ChessBoard toBoard() {
+            return new ChessBoard(this);
+        }
+
+        public long getHash() {
+            return hash;
+        }
+
+        public ChessPiece.Color getColorToMove() {
+            return colorToMove;
         }
     }
 
@@ -944,10 +1340,6 @@ public class ChessBoard {
             movesMade++;
         }
 
-        private boolean isOfType(Color color, Piece piece) {
-            return this.color == color && this.piece == piece;
-        }
-
         /**
          * Type of figure on the board
          */
@@ -975,6 +1367,36 @@ public class ChessBoard {
             public int getValue() {
                 return value;
             }
+
+            /**
+             * @return lower case letter of the piece in Forsyth-Edwards Notation
+             */
+            public char getSymbol() {
+                return this == KNIGHT ? 'n' : Character.toLowerCase(name.charAt(0));
+            }
+
+            /**
+             * @param symbol letter of the piece in Forsyth-Edwards Notation of any case
+             * @return piece of the letter
+             */
+            public static Piece ofSymbol(char symbol) {
+                switch (Character.toLowerCase(symbol)) {
+                    case 'p':
+                        return PAWN;
+                    case 'r':
+                        return ROOK;
+                    case 'n':
+                        return KNIGHT;
+                    case 'b':
+                        return BISHOP;
+                    case 'q':
+                        return QUEEN;
+                    case 'k':
+                        return KING;
+                    default:
+                        throw new IllegalArgumentException("Invalid piece symbol!");
+                }
+            }
         }
 
         /**
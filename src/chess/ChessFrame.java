@@ -6,6 +6,13 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -13,20 +20,26 @@ import static chess.ComputerAdversaryFactory.Difficulty.*;
 import static javax.swing.BoxLayout.Y_AXIS;
 
 public class ChessFrame extends JFrame implements MouseListener, MouseMotionListener {
+    private static final String GAMES_PATH = "Games/Games.pgn";
     private JPanel chessPanel;
     private JPanel[][] fields;
     private JLayeredPane layeredPane;
     private JLabel chessPiece;
     private SoundEffect soundEffect;
     private final ChessBoard board;
+    private final ChessBoard startingBoard;
+    private final java.util.List<Integer> playedMoves;
     private ChessBoard.ChessPiece movedPiece;
     private ChessBoard.Field.Position movedPosition;
     private java.util.List<ChessBoard.Field.Move> validMoves;
     private int xAdjustment;
     private int yAdjustment;
+    private boolean isGameOver;
 
     public ChessFrame(ChessBoard board) {
         this.board = board;
+        startingBoard = new ChessBoard(board);
+        playedMoves = new ArrayList<>();
         configureFrame();
         configureChessPanel();
         configureLayeredPane();
@@ -157,7 +170,7 @@ public class ChessFrame extends JFrame implements MouseListener, MouseMotionList
             if(soundEffect != null) soundEffect.play();
             chessPiece = (JLabel) component;
             setAdjustments(component, e);
-            findAndRemovePiece(component.getParent());
+            findMovedPiece(component.getParent());
             addResizedToDragLayer(e);
         }
     }
@@ -201,7 +214,7 @@ public class ChessFrame extends JFrame implements MouseListener, MouseMotionList
         chessPiece.setVisible(true);
         checkForGameEnding();
 
-        if(board.getColorToMove() == ChessBoard.ChessPiece.Color.BLACK) {
+        if(!isGameOver && board.getColorToMove() == ChessBoard.ChessPiece.Color.BLACK) {
             EventQueue.invokeLater(this::computerMove);
         }
     }
@@ -223,29 +236,84 @@ public class ChessFrame extends JFrame implements MouseListener, MouseMotionList
         move(endingField, move);
         chessPiece.setVisible(true);
         checkForGameEnding();
+        if(!isGameOver) adversary.startPondering();
     }
 
     private void move(Container parent, ChessBoard.Field.Move move) {
+        MoveAppliedEvent event = new MoveAppliedEvent();
+        event.begin();
+
+        ChessBoard.ChessPiece.Color color = board.getColorToMove();
+        int encodedMove = Moves.encode(move);
+
         capturePiece(move);
+
+        if (move.getSpecialMove() == ChessBoard.ChessPiece.SpecialMove.PROMOTION) {
+            encodedMove = Moves.encode(Moves.getFrom(encodedMove), Moves.getTo(encodedMove), ChessBoard.ChessPiece.SpecialMove.PROMOTION, movedPiece.getPiece());
+        }
+
+        playedMoves.add(encodedMove);
         parent.add(chessPiece);
-        movedPiece.incrementMovesMade();
-        ChessBoard.Field newField = addPieceToBoard(parent);
-        newField.setTurnStanding(0);
-        board.changeTurn();
+        board.makeMove(encodedMove);
+        hidePossibleMoves();
+
+        if (event.shouldCommit()) {
+            event.move = Moves.toString(encodedMove);
+            event.color = color.getColor();
+            event.computerMove = color == ChessBoard.ChessPiece.Color.BLACK;
+            event.commit();
+        }
     }
 
     private void cancelMove(JPanel field) {
         field.add(chessPiece);
-        addPieceToBoard(field);
+        hidePossibleMoves();
     }
 
     private void checkForGameEnding() {
 
         if (board.cannotMove(board.getColorToMove())) {
+            isGameOver = true;
+            board.getAdversary().stopPondering();
+            saveGame();
             setGameEndingSound();
             if(soundEffect != null) soundEffect.play();
             displayVictoryPanel();
-            this.dispatchEvent(new WindowEvent(this, WindowEvent.WINDOW_CLOSING));
+
+            if (wantsAnalysis()) {
+                new AnalysisFrame(startingBoard, playedMoves).setVisible(true);
+                dispose();
+            } else {
+                this.dispatchEvent(new WindowEvent(this, WindowEvent.WINDOW_CLOSING));
+            }
+        }
+    }
+
+    private boolean wantsAnalysis() {
+        return JOptionPane.showConfirmDialog(null, "Analyse the game?", "Analysis", JOptionPane.YES_NO_OPTION, JOptionPane.PLAIN_MESSAGE) == JOptionPane.YES_OPTION;
+    }
+
+    /**
+     * Appends the finished game to the games file in PGN
+     */
+    private void saveGame() {
+        ChessBoard.ChessPiece.Color winner = ChessBoard.ChessPiece.Color.getOpposingColor(board.getColorToMove());
+        String result = !board.isCheckMate(winner) ? "1/2-1/2" : winner == ChessBoard.ChessPiece.Color.WHITE ? "1-0" : "0-1";
+        Map<String, String> tags = new LinkedHashMap<>();
+        int[] moves = playedMoves.stream().mapToInt(Integer::intValue).toArray();
+
+        tags.put("Event", "Casual game");
+        tags.put("Site", "ChessAI");
+        tags.put("Date", LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy.MM.dd")));
+        tags.put("Round", "-");
+        tags.put("White", "Player");
+        tags.put("Black", "Computer");
+        tags.put("Result", result);
+
+        try {
+            PgnWriter.append(Path.of(GAMES_PATH), tags, startingBoard, moves, result);
+        } catch (IOException | IllegalArgumentException e) {
+            Logger.getLogger("global").log(Level.WARNING, "Game could not be saved!", e);
         }
     }
 
@@ -322,10 +390,8 @@ public class ChessFrame extends JFrame implements MouseListener, MouseMotionList
         int column = move.getPosition().getColumn();
         int rookColumn = column == 2 ? 0 : 7;
         int newRookColumn = column == 2 ? 3 : 5;
-        int movesMade = board.getField(row, rookColumn).getChessPiece().getMovesMade();
         Component rook = removePiece(row, rookColumn);
         fields[row][newRookColumn].add(rook).setVisible(true);
-        board.addPiece(row, newRookColumn, new ChessBoard.ChessPiece(board.getColorToMove(), ChessBoard.ChessPiece.Piece.ROOK, movesMade));
     }
 
     private void enPassant(ChessBoard.Field.Move move) {
@@ -368,29 +434,12 @@ public class ChessFrame extends JFrame implements MouseListener, MouseMotionList
         return new ImageIcon(image.getScaledInstance(scaledWidth, scaledHeight, Image.SCALE_SMOOTH));
     }
 
-    private ChessBoard.Field addPieceToBoard(Container field) {
-
-        for (int i = 0; i < fields.length; i++) {
-            for (int j = 0; j < fields[i].length; j++) {
-                if (fields[i][j] == field) {
-                    board.addPiece(i, j, movedPiece);
-                    hidePossibleMoves();
-                    return board.getField(i, j);
-                }
-            }
-        }
-
-        hidePossibleMoves();
-        return null;
-    }
-
-    private void findAndRemovePiece(Container container) {
+    private void findMovedPiece(Container container) {
         ChessBoard.Field field = findField(container);
         if (field != null) {
             movedPiece = field.getChessPiece();
             movedPosition = field.getPosition();
             showPossibleMoves(field);
-            board.removePiece(movedPosition);
         }
     }
 
@@ -439,7 +488,6 @@ public class ChessFrame extends JFrame implements MouseListener, MouseMotionList
         Component piece = fields[row][column].getComponent(0);
         piece.setVisible(false);
         fields[row][column].remove(0);
-        board.removePiece(row, column);
 
         return piece;
     }
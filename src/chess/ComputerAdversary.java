@@ -3,7 +3,7 @@ package chess;
 import java.util.Random;
 
 public abstract class ComputerAdversary {
-    protected static Random random = new Random();
+    protected Random random = new Random();
     protected ChessBoard board;
     protected ChessBoard.ChessPiece.Color color;
 
@@ -12,7 +12,27 @@ public abstract class ComputerAdversary {
         this.board = board;
     }
 
+    /**
+     * Makes the random choices of this adversary, such as book moves, reproducible
+     * @param seed seed of the adversary's random numbers, usually chosen per game
+     */
+    public void setSeed(long seed) {
+        random = new Random(seed);
+    }
+
     public abstract ChessBoard.Field.Move chooseMove();
 
     public abstract ChessBoard.ChessPiece.Piece choosePromotion();
+
+    /**
+     * Lets the adversary think on the opponent's time, called after the chosen move was made on the board
+     */
+    public void startPondering() {
+    }
+
+    /**
+     * Stops thinking started by {@link #startPondering()}
+     */
+    public void stopPondering() {
+    }
 }
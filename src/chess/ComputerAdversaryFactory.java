@@ -14,31 +14,51 @@ public class ComputerAdversaryFactory {
             case MEDIUM:
                 return new MiniMaxAdversary(color, board, 3, true);
             case HARD:
-                return new MiniMaxAdversary(color, board, 4, true);
+                return withEvaluation(new MiniMaxAdversary(color, board, 4, true), difficulty);
             case VERY_HARD:
-                return new MiniMaxAdversary(color, board, 5, true);
+                return withEvaluation(new MiniMaxAdversary(color, board, 5, true), difficulty);
         }
 
         return new MiniMaxAdversary(color, board, 3, true);
     }
 
+    /**
+     * Selects the evaluation backend of the difficulty, the classical evaluation is kept when no network file exists
+     */
+    private static MiniMaxAdversary withEvaluation(MiniMaxAdversary adversary, Difficulty difficulty) {
+        if (difficulty.getEvaluation() == Evaluation.NEURAL_NETWORK) adversary.setNeuralNetwork(NeuralNetwork.getDefault());
+
+        return adversary;
+    }
+
+    public enum Evaluation {
+        CLASSICAL,
+        NEURAL_NETWORK
+    }
+
     public enum Difficulty {
-        VERY_EASY(new Color(38, 50, 83)),
-        EASY(new Color(42, 157, 143)),
-        MEDIUM(new Color(233, 196, 106)),
-        HARD(new Color(244, 162, 97)),
-        VERY_HARD(new Color(231, 111, 81));
+        VERY_EASY(new Color(38, 50, 83), Evaluation.CLASSICAL),
+        EASY(new Color(42, 157, 143), Evaluation.CLASSICAL),
+        MEDIUM(new Color(233, 196, 106), Evaluation.CLASSICAL),
+        HARD(new Color(244, 162, 97), Evaluation.NEURAL_NETWORK),
+        VERY_HARD(new Color(231, 111, 81), Evaluation.NEURAL_NETWORK);
 
         private final Color color;
+        private final Evaluation evaluation;
 
-        Difficulty(Color color) {
+        Difficulty(Color color, Evaluation evaluation) {
             this.color = color;
+            this.evaluation = evaluation;
         }
 
         public Color getColor() {
             return color;
         }
 
+        public Evaluation getEvaluation() {
+            return evaluation;
+        }
+
         @Override
         public String toString() {
             return name().charAt(0) + name().substring(1).toLowerCase(Locale.ROOT).replace('_',' ');
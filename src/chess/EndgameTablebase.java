@@ -0,0 +1,335 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static chess.ChessBoard.ChessPiece.Color.BLACK;
+import static chess.ChessBoard.ChessPiece.Color.WHITE;
+
+/**
+ * Endgame tablebases stored in local files written by the {@link TablebaseGenerator}, one file per material signature
+ * (e.g. KQvK.tbwdl and KQvK.tbdtz). The format is this engine's own, not Syzygy: each file holds one uncompressed byte
+ * per position indexed by side to move and squares of the pieces, see {@link #locate}.
+ * All files of the directory are memory-mapped when the tablebases are created and looked up by a material key,
+ * so probing from several search threads neither locks nor allocates. Instead of an LRU of open mappings, which would
+ * need a lock on every probe, the operating system keeps only the recently probed pages of the mappings in memory.
+ */
+public class EndgameTablebase {
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+    public static final int LOSS = -2;
+    public static final int DRAW = 0;
+    public static final int WIN = 2;
+    public static final int MAX_PIECES = 4;
+    private static final String DIRECTORY = "Tablebases";
+    static final String WDL_SUFFIX = ".tbwdl";
+    static final String DTZ_SUFFIX = ".tbdtz";
+    static final String PIECE_ORDER = "QRBNP";
+    private static final int SIDE_TOKENS = PIECE_ORDER.length();
+    private static final int KEY_BASE = 2 * SIDE_TOKENS + 1;
+    /**
+     * Position of each piece ordinal in {@link #PIECE_ORDER} plus one, 0 for kings and empty squares
+     */
+    private static final int[] PIECE_TOKENS = {0, 5, 2, 4, 3, 1, 0};
+    /**
+     * Piece ordinal of each position in {@link #PIECE_ORDER}
+     */
+    private static final int[] TOKEN_PIECES = {5, 2, 4, 3, 1};
+    private static EndgameTablebase defaultTablebase;
+
+    private final ByteBuffer[] wdlTables = new ByteBuffer[KEY_BASE * KEY_BASE];
+    private final ByteBuffer[] dtzTables = new ByteBuffer[KEY_BASE * KEY_BASE];
+
+    EndgameTablebase(Path directory) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String filename = file.getFileName().toString();
+
+                if (filename.endsWith(WDL_SUFFIX)) load(file, wdlTables, filename.length() - WDL_SUFFIX.length());
+                else if (filename.endsWith(DTZ_SUFFIX)) load(file, dtzTables, filename.length() - DTZ_SUFFIX.length());
+            }
+        } catch (IOException e) {
+            Logger.getLogger("global").log(Level.WARNING, "Failed to list tablebases in " + directory + "!", e);
+        }
+    }
+
+    /**
+     * Tablebases from the default directory, shared by all adversaries
+     * @return tablebases or null if the directory does not exist
+     */
+    public static synchronized EndgameTablebase getDefault() {
+        if (defaultTablebase == null && Files.isDirectory(Path.of(DIRECTORY))) {
+            defaultTablebase = new EndgameTablebase(Path.of(DIRECTORY));
+        }
+
+        return defaultTablebase;
+    }
+
+    /**
+     * Win/draw/loss of the position from the side to move perspective
+     * @param board position to probe
+     * @return one of WIN, DRAW, LOSS (or -1, 1 for blessed loss and cursed win) or UNKNOWN if no table covers the position
+     */
+    public int probeWdl(ChessBoard board) {
+        int value = probe(board, wdlTables);
+
+        return value == UNKNOWN ? UNKNOWN : (byte) value;
+    }
+
+    /**
+     * Distance to zeroing of the position: plies to the next capture, pawn move or checkmate with the best play of both sides
+     * @param board position to probe
+     * @return distance, 0 for drawn and checkmated positions, or UNKNOWN if no table covers the position
+     */
+    public int probeDtz(ChessBoard board) {
+        return probe(board, dtzTables);
+    }
+
+    /**
+     * Finds the move keeping the best tablebase result, preferring the fastest progress when winning.
+     * Without distances to zeroing a won or lost position can not be converted from the tables, it is left to the search,
+     * which still probes the win/draw/loss tables at its nodes.
+     * @param board position to play in
+     * @return best move or null when the position or any position after a valid move is not covered,
+     * or when the position is not drawn and a position after a valid move has no distance to zeroing
+     */
+    public ChessBoard.Field.Move findMove(ChessBoard board) {
+        if (board.getPieceCount() > MAX_PIECES) return null;
+
+        int rootWdl = probeWdl(board);
+
+        if (rootWdl == UNKNOWN) return null;
+
+        int bestMove = Moves.NO_MOVE;
+        int bestScore = Integer.MIN_VALUE;
+        int[] validMoves = new int[ChessBoard.MAX_MOVES];
+        int validMoveCount = board.generateMoves(validMoves);
+
+        for (int i = 0; i < validMoveCount; i++) {
+            int move = validMoves[i];
+            int from = Moves.getFrom(move);
+            int to = Moves.getTo(move);
+            boolean isZeroing = board.getPiece(from) == ChessBoard.ChessPiece.Piece.PAWN
+                || board.getColor(to) != ChessBoard.ChessPiece.Color.NONE;
+
+            board.makeMove(move);
+            int wdl = probeWdl(board);
+            int dtz = probeDtz(board);
+            board.unmakeMove(move);
+
+            if (wdl == UNKNOWN || dtz == UNKNOWN && rootWdl != DRAW) return null;
+
+            int score = moveScore(-wdl, isZeroing, dtz);
+
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+            }
+        }
+
+        return bestMove == Moves.NO_MOVE ? null : board.toMove(bestMove);
+    }
+
+    /**
+     * Orders moves by their result first, then by the distance to zeroing of the following position, checkmates first
+     * @param wdl result after the move from the moving side perspective
+     * @param isZeroing whether the move is a capture or a pawn move
+     * @param dtz distance to zeroing of the following position, UNKNOWN only among the moves of a drawn position
+     * @return score where higher is better
+     */
+    private int moveScore(int wdl, boolean isZeroing, int dtz) {
+        int distance = dtz == UNKNOWN ? 0 : dtz;
+
+        if (wdl > DRAW) return wdl * 1000 + (isZeroing ? 998 : 999 - distance);
+        if (wdl < DRAW) return wdl * 1000 + distance;
+
+        return 0;
+    }
+
+    private int probe(ChessBoard board, ByteBuffer[] tables) {
+        if (board.getPieceCount() == 2) return tables == wdlTables ? DRAW : UNKNOWN;
+
+        long location = locate(board, tables);
+
+        if (location < 0) return UNKNOWN;
+
+        return Byte.toUnsignedInt(tables[(int) (location >>> 32)].get((int) location));
+    }
+
+    /**
+     * @return index of the position in the win/draw/loss table of its material or -1 if no table covers the position
+     */
+    int index(ChessBoard board) {
+        long location = locate(board, wdlTables);
+
+        return location < 0 ? -1 : (int) location;
+    }
+
+    /**
+     * Position index in a table file: squares (a1 = 0, h8 = 63) of the pieces in signature order,
+     * pieces of the same kind ordered by square, combined as base 64 digits; second half of the file is for the side listed second to move.
+     * Non-king pieces are identified by tokens, 1 to 5 for the pieces of {@link #PIECE_ORDER} of the side listed first
+     * and 6 to 10 for the side listed second, the table is found by the key of the two tokens of the position.
+     * @return key of the table in the upper and index in the lower 32 bits or -1 if no table covers the position
+     */
+    private long locate(ChessBoard board, ByteBuffer[] tables) {
+        if (board.getPieceCount() == 2 || board.getPieceCount() > MAX_PIECES) return -1;
+
+        byte[] pieceCodes = board.getPieceCodes();
+        int lower = 0;
+        int higher = 0;
+
+        for (int square = 0; square < 64; square++) {
+            int token = token(pieceCodes[square]);
+
+            if (token == 0) continue;
+
+            if (token >= higher) {
+                lower = higher;
+                higher = token;
+            } else {
+                lower = token;
+            }
+        }
+
+        boolean isMirrored = false;
+        int key = lower * KEY_BASE + higher;
+
+        if (tables[key] == null) {
+            isMirrored = true;
+            int mirroredLower = Math.min(mirror(lower), mirror(higher));
+            higher = Math.max(mirror(lower), mirror(higher));
+            lower = mirroredLower;
+            key = lower * KEY_BASE + higher;
+        }
+
+        if (tables[key] == null) return -1;
+
+        int index = 0;
+        int shift = 0;
+
+        for (int side = 0; side < 2; side++) {
+            int colorCode = (side == 0 ^ isMirrored ? WHITE : BLACK).ordinal() << 3;
+
+            index |= squareDigits(pieceCodes, colorCode | ChessBoard.ChessPiece.Piece.KING.ordinal(), isMirrored, shift);
+            shift += 6;
+
+            if (lower != 0 && side(lower) == side) {
+                index |= squareDigits(pieceCodes, colorCode | TOKEN_PIECES[(lower - 1) % SIDE_TOKENS], isMirrored, shift);
+                shift += lower == higher ? 12 : 6;
+            }
+
+            if (higher != lower && side(higher) == side) {
+                index |= squareDigits(pieceCodes, colorCode | TOKEN_PIECES[(higher - 1) % SIDE_TOKENS], isMirrored, shift);
+                shift += 6;
+            }
+        }
+
+        boolean firstToMove = board.getColorToMove() == (isMirrored ? BLACK : WHITE);
+
+        return (long) key << 32 | (firstToMove ? index : index + (1 << shift));
+    }
+
+    /**
+     * Squares of all pieces with the code as consecutive base 64 digits in ascending order
+     * @param shift bit position of the first digit
+     */
+    private int squareDigits(byte[] pieceCodes, int code, boolean isMirrored, int shift) {
+        int digits = 0;
+
+        for (int square = 0; square < 64; square++) {
+            int row = isMirrored ? square >> 3 : 7 - (square >> 3);
+
+            if (pieceCodes[Moves.square(row, square & 7)] == code) {
+                digits |= square << shift;
+                shift += 6;
+            }
+        }
+
+        return digits;
+    }
+
+    /**
+     * @return token of a non-king piece with white listed first, 0 for kings and empty squares
+     */
+    private static int token(int pieceCode) {
+        int token = PIECE_TOKENS[pieceCode & 7];
+
+        return token == 0 || pieceCode >> 3 == WHITE.ordinal() ? token : token + SIDE_TOKENS;
+    }
+
+    private static int mirror(int token) {
+        return token == 0 ? 0 : token > SIDE_TOKENS ? token - SIDE_TOKENS : token + SIDE_TOKENS;
+    }
+
+    private static int side(int token) {
+        return (token - 1) / SIDE_TOKENS;
+    }
+
+    /**
+     * Maps the file into the slot of its material signature, files not named like a supported signature are skipped
+     * @param signatureLength length of the file name without the suffix
+     */
+    private void load(Path file, ByteBuffer[] tables, int signatureLength) {
+        String signature = file.getFileName().toString().substring(0, signatureLength);
+        int key = materialKey(signature);
+
+        if (key < 0) {
+            Logger.getLogger("global").log(Level.FINE, "Skipping unsupported tablebase " + file + "!");
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            tables[key] = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            Logger.getLogger("global").log(Level.WARNING, "Failed to map tablebase " + file + "!", e);
+        }
+    }
+
+    /**
+     * Uses the tables for the material signature instead of any loaded from files, such as tables being generated
+     */
+    void putTables(String signature, ByteBuffer wdlTable, ByteBuffer dtzTable) {
+        int key = materialKey(signature);
+
+        if (key < 0) throw new IllegalArgumentException("Unsupported signature " + signature + "!");
+
+        wdlTables[key] = wdlTable;
+        dtzTables[key] = dtzTable;
+    }
+
+    /**
+     * @param signature pieces of both sides like KQvKR
+     * @return key of the two non-king tokens in ascending order or -1 if the signature is not supported
+     */
+    private static int materialKey(String signature) {
+        String[] sides = signature.split("v");
+
+        if (sides.length != 2) return -1;
+
+        int lower = 0;
+        int higher = 0;
+        int count = 0;
+
+        for (int side = 0; side < 2; side++) {
+            if (!sides[side].startsWith("K")) return -1;
+
+            for (int i = 1; i < sides[side].length(); i++) {
+                int position = PIECE_ORDER.indexOf(sides[side].charAt(i));
+
+                if (position < 0 || ++count > MAX_PIECES - 2) return -1;
+
+                lower = higher;
+                higher = side * SIDE_TOKENS + position + 1;
+            }
+        }
+
+        return count == 0 ? -1 : Math.min(lower, higher) * KEY_BASE + Math.max(lower, higher);
+    }
+}
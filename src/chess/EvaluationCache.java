@@ -0,0 +1,45 @@
+package chess;
+
+/**
+ * Lossy cache of leaf evaluations keyed by the position hash, shared by all search threads of an adversary
+ * or by several adversaries evaluating alike.
+ * Entries are stored like in the {@link TranspositionTable}, the key xor-ed with the data followed by the data,
+ * and a new evaluation always overwrites the entry of its slot.
+ */
+public class EvaluationCache {
+    public static final int NO_ENTRY = Integer.MIN_VALUE;
+    public static final int DEFAULT_ENTRIES = 1 << 16;
+    private static final long VALID = 1L << 32;
+
+    private final long[] entries;
+
+    /**
+     * @param entryCount number of entries, rounded down to a power of two
+     */
+    public EvaluationCache(int entryCount) {
+        entries = new long[2 * Integer.highestOneBit(Math.max(1, entryCount))];
+    }
+
+    /**
+     * @param key hash of the position
+     * @return cached evaluation of the position or NO_ENTRY
+     */
+    public int probe(long key) {
+        int index = index(key);
+        long data = entries[index + 1];
+
+        return (entries[index] ^ data) == key && (data & VALID) != 0 ? (int) data : NO_ENTRY;
+    }
+
+    public void store(long key, int evaluation) {
+        int index = index(key);
+        long data = VALID | evaluation & 0xFFFFFFFFL;
+
+        entries[index] = key ^ data;
+        entries[index + 1] = data;
+    }
+
+    private int index(long key) {
+        return 2 * (int) (key & ((entries.length >> 1) - 1));
+    }
+}
@@ -0,0 +1,347 @@
+package chess;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static chess.ChessBoard.ChessPiece.Color.WHITE;
+
+/**
+ * Texel-style tuning of piece values and piece-square tables.
+ * Reads positions labelled with the final game result, one per line as FEN followed by the result
+ * ("1-0", "0-1", "1/2-1/2", e.g. EPD with c9 "1-0";) or by a score in brackets ([1.0], [0.5], [0.0]),
+ * and minimises the squared error between the results and the static evaluation mapped to a win probability
+ * by {@code 1 / (1 + 10^(-K * evaluation / 400))}.
+ * The evaluation is linear in its weights, so every position is stored once as the list of weights it uses
+ * and the error and its gradient are summed over the positions with fork/join.
+ */
+public class EvaluationTuner {
+    private static final int TABLE_OFFSET = PieceTables.VALUED_PIECES.length;
+    private static final int WEIGHT_COUNT = TABLE_OFFSET + PieceTables.TABLE_NAMES.length * 64;
+    private static final int POSITIONS_PER_TASK = 4096;
+    private static final double LEARNING_RATE = 1.0;
+    private static final double FIRST_MOMENT_DECAY = 0.9;
+    private static final double SECOND_MOMENT_DECAY = 0.999;
+
+    private final List<int[]> features = new ArrayList<>();
+    private final List<Double> results = new ArrayList<>();
+    private final double[] weights = new double[WEIGHT_COUNT];
+    private final double[] firstMoments = new double[WEIGHT_COUNT];
+    private final double[] secondMoments = new double[WEIGHT_COUNT];
+    private final ForkJoinPool pool;
+    private double scale = 1.0;
+
+    public EvaluationTuner(ForkJoinPool pool) {
+        this.pool = pool;
+
+        for (int i = 0; i < TABLE_OFFSET; i++) {
+            weights[i] = PieceTables.getPieceValue(PieceTables.VALUED_PIECES[i]);
+        }
+
+        for (int table = 0; table < PieceTables.TABLE_NAMES.length; table++) {
+            int[] values = PieceTables.getTable(table);
+
+            for (int square = 0; square < 64; square++) {
+                weights[TABLE_OFFSET + table * 64 + square] = values[square];
+            }
+        }
+    }
+
+    /**
+     * Arguments: positions output-directory [--iterations n] [--threads n]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: positions output-directory [--iterations n] [--threads n]");
+            return;
+        }
+
+        int iterations = 500;
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 2; i < args.length - 1; i += 2) {
+            if (args[i].equals("--iterations")) iterations = Integer.parseInt(args[i + 1]);
+            else if (args[i].equals("--threads")) threads = Integer.parseInt(args[i + 1]);
+            else throw new IllegalArgumentException("Unknown option " + args[i]);
+        }
+
+        EvaluationTuner tuner = new EvaluationTuner(new ForkJoinPool(threads));
+        int count = tuner.readPositions(Path.of(args[0]));
+        System.out.println(count + " positions");
+
+        System.out.printf(Locale.ROOT, "K = %.4f, error %.6f%n", tuner.fitScale(), tuner.error());
+
+        for (int iteration = 1; iteration <= iterations; iteration++) {
+            double error = tuner.step(iteration);
+            if (iteration % 50 == 0 || iteration == iterations) System.out.printf(Locale.ROOT, "iteration %d error %.6f%n", iteration, error);
+        }
+
+        tuner.writeTables(Path.of(args[1]));
+        System.out.println("Tables written to " + args[1]);
+    }
+
+    /**
+     * Reads labelled positions, lines that can not be parsed are skipped
+     * @return number of positions read
+     */
+    public int readPositions(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
+            String line;
+            int lineNumber = 0;
+
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) continue;
+
+                try {
+                    addPosition(line);
+                } catch (IllegalArgumentException e) {
+                    Logger.getLogger("global").log(Level.WARNING, "Skipping line " + lineNumber + " of " + path + ": " + e.getMessage());
+                }
+            }
+        }
+
+        return results.size();
+    }
+
+    private void addPosition(String line) {
+        double result = parseResult(line);
+        String[] fields = line.trim().split("\\s+");
+
+        if (fields.length < 4) throw new IllegalArgumentException("Missing position");
+
+        ChessBoard board = ChessBoard.fromFen(String.join(" ", fields[0], fields[1], fields[2], fields[3]));
+        features.add(extractFeatures(board));
+        results.add(result);
+    }
+
+    private static double parseResult(String line) {
+        int bracket = line.indexOf('[');
+
+        if (bracket >= 0) return Double.parseDouble(line.substring(bracket + 1, line.indexOf(']', bracket)).trim());
+        if (line.contains("1/2-1/2")) return 0.5;
+        if (line.contains("1-0")) return 1.0;
+        if (line.contains("0-1")) return 0.0;
+
+        throw new IllegalArgumentException("Missing result");
+    }
+
+    /**
+     * Weights used by the static evaluation of the position, encoded as weight index * 2 plus 1 for black pieces
+     * which count negatively
+     */
+    private static int[] extractFeatures(ChessBoard board) {
+        boolean isEndgame = board.isEndgame();
+        int[] found = new int[64];
+        int count = 0;
+
+        for (int row = 0; row < 8; row++) {
+            for (int column = 0; column < 8; column++) {
+                ChessBoard.ChessPiece chessPiece = board.getField(row, column).getChessPiece();
+
+                if (chessPiece.getColor() == ChessBoard.ChessPiece.Color.NONE) continue;
+
+                int sign = chessPiece.getColor() == WHITE ? 0 : 1;
+                int valueIndex = valueIndex(chessPiece.getPiece());
+                int tableIndex = PieceTables.tableIndex(chessPiece.getPiece(), isEndgame);
+
+                if (valueIndex >= 0) found[count++] = valueIndex * 2 + sign;
+                if (tableIndex >= 0) {
+                    int square = PieceTables.tableSquare(row, column, chessPiece.getColor());
+                    found[count++] = (TABLE_OFFSET + tableIndex * 64 + square) * 2 + sign;
+                }
+            }
+        }
+
+        int[] positionFeatures = new int[count];
+        System.arraycopy(found, 0, positionFeatures, 0, count);
+
+        return positionFeatures;
+    }
+
+    private static int valueIndex(ChessBoard.ChessPiece.Piece piece) {
+        for (int i = 0; i < PieceTables.VALUED_PIECES.length; i++) {
+            if (PieceTables.VALUED_PIECES[i] == piece) return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Finds the K of the win probability mapping that fits the current weights best, by ternary search
+     * @return fitted K
+     */
+    public double fitScale() {
+        double low = 0.1;
+        double high = 5.0;
+
+        while (high - low > 0.001) {
+            double first = low + (high - low) / 3;
+            double second = high - (high - low) / 3;
+
+            scale = first;
+            double firstError = error();
+            scale = second;
+            double secondError = error();
+
+            if (firstError < secondError) high = second;
+            else low = first;
+        }
+
+        scale = (low + high) / 2;
+
+        return scale;
+    }
+
+    /**
+     * @return mean squared error of the predicted results with the current weights
+     */
+    public double error() {
+        return pool.invoke(new ErrorTask(0, results.size(), false)).error / results.size();
+    }
+
+    /**
+     * One Adam gradient descent step over all positions, the mapping scale K stays fixed
+     * @param iteration number of the step starting at 1
+     * @return mean squared error before the step
+     */
+    public double step(int iteration) {
+        ErrorTask.Sums sums = pool.invoke(new ErrorTask(0, results.size(), true));
+        double firstCorrection = 1 - Math.pow(FIRST_MOMENT_DECAY, iteration);
+        double secondCorrection = 1 - Math.pow(SECOND_MOMENT_DECAY, iteration);
+
+        for (int i = 0; i < WEIGHT_COUNT; i++) {
+            double gradient = sums.gradient[i] / results.size();
+
+            firstMoments[i] = FIRST_MOMENT_DECAY * firstMoments[i] + (1 - FIRST_MOMENT_DECAY) * gradient;
+            secondMoments[i] = SECOND_MOMENT_DECAY * secondMoments[i] + (1 - SECOND_MOMENT_DECAY) * gradient * gradient;
+            weights[i] -= LEARNING_RATE * (firstMoments[i] / firstCorrection) / (Math.sqrt(secondMoments[i] / secondCorrection) + 1e-12);
+        }
+
+        return sums.error / results.size();
+    }
+
+    private double evaluate(int[] positionFeatures) {
+        double evaluation = 0;
+
+        for (int feature : positionFeatures) {
+            double weight = weights[feature >>> 1];
+            evaluation += (feature & 1) == 0 ? weight : -weight;
+        }
+
+        return evaluation;
+    }
+
+    private double winProbability(double evaluation) {
+        return 1 / (1 + Math.pow(10, -scale * evaluation / 400));
+    }
+
+    /**
+     * Writes the tuned tables in the format read by {@link PieceTables} together with the piece values file
+     * @param directory directory to write to, created if missing
+     */
+    public void writeTables(Path directory) throws IOException {
+        Files.createDirectories(directory);
+
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(directory.resolve(PieceTables.PIECE_VALUES_FILE)))) {
+            for (int i = 0; i < TABLE_OFFSET; i++) {
+                writer.println(PieceTables.VALUED_PIECES[i].getName() + ", " + Math.round(weights[i]));
+            }
+        }
+
+        for (int table = 0; table < PieceTables.TABLE_NAMES.length; table++) {
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(directory.resolve(PieceTables.TABLE_NAMES[table] + ".txt")))) {
+                for (int row = 0; row < 8; row++) {
+                    StringBuilder line = new StringBuilder();
+
+                    for (int column = 0; column < 8; column++) {
+                        if (column > 0) line.append(',');
+                        line.append(String.format(Locale.ROOT, "%3d", Math.round(weights[TABLE_OFFSET + table * 64 + row * 8 + column])));
+                    }
+
+                    if (row < 7) line.append(',');
+                    writer.print(line);
+                    if (row < 7) writer.println();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sums the squared error, and optionally its gradient, over a range of positions, splitting large ranges in halves
+     */
+    private class ErrorTask extends RecursiveTask<ErrorTask.Sums> {
+        private final int start;
+        private final int end;
+        private final boolean computesGradient;
+
+        private ErrorTask(int start, int end, boolean computesGradient) {
+            this.start = start;
+            this.end = end;
+            this.computesGradient = computesGradient;
+        }
+
+        @Override
+        protected Sums compute() {
+            if (end - start > POSITIONS_PER_TASK) {
+                int middle = (start + end) >>> 1;
+                ErrorTask second = new ErrorTask(middle, end, computesGradient);
+
+                second.fork();
+                Sums sums = new ErrorTask(start, middle, computesGradient).compute();
+                sums.add(second.join());
+
+                return sums;
+            }
+
+            Sums sums = new Sums(computesGradient);
+            double derivativeFactor = scale * Math.log(10) / 400;
+
+            for (int i = start; i < end; i++) {
+                int[] positionFeatures = features.get(i);
+                double probability = winProbability(evaluate(positionFeatures));
+                double difference = results.get(i) - probability;
+
+                sums.error += difference * difference;
+
+                if (computesGradient) {
+                    double derivative = -2 * difference * probability * (1 - probability) * derivativeFactor;
+
+                    for (int feature : positionFeatures) {
+                        sums.gradient[feature >>> 1] += (feature & 1) == 0 ? derivative : -derivative;
+                    }
+                }
+            }
+
+            return sums;
+        }
+
+        private class Sums {
+            private final double[] gradient;
+            private double error;
+
+            private Sums(boolean computesGradient) {
+                gradient = computesGradient ? new double[WEIGHT_COUNT] : null;
+            }
+
+            private void add(Sums other) {
+                error += other.error;
+
+                if (gradient != null) {
+                    for (int i = 0; i < WEIGHT_COUNT; i++) {
+                        gradient[i] += other.gradient[i];
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package chess;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * One player connected to a {@link GameServer} through a line based text protocol:
+ * <pre>
+ * new white|black [depth]  opens a game where the player has the color, answered by "session id"
+ * move e2e4                plays the move of the player
+ * go                       requests the engine move again after the server was busy
+ * quit                     closes the game and the connection
+ * </pre>
+ * Engine moves are sent as "move e7e5", the end of the game as "result 1-0" and failures as "error message".
+ * The thread of the connection blocks while the engine thinks, so it should be a virtual one.
+ */
+public class GameConnection implements Runnable {
+    private static final int DEFAULT_DEPTH = 4;
+
+    private final GameServer server;
+    private final Socket socket;
+    private GameSession session;
+
+    public GameConnection(GameServer server, Socket socket) {
+        this.server = server;
+        this.socket = socket;
+    }
+
+    @Override
+    public void run() {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            String line;
+
+            while ((line = in.readLine()) != null) {
+                String[] command = line.trim().split("\\s+");
+
+                if (command[0].equals("quit")) break;
+
+                try {
+                    handle(command, out);
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    out.println("error " + e.getMessage());
+                } catch (RejectedExecutionException e) {
+                    out.println("error Server is busy!");
+                }
+            }
+        } catch (IOException e) {
+            Logger.getLogger("global").log(Level.FINE, "Connection closed!", e);
+        } finally {
+            if (session != null) server.closeSession(session.getId());
+        }
+    }
+
+    private void handle(String[] command, PrintWriter out) {
+        switch (command[0]) {
+            case "new":
+                if (session != null) server.closeSession(session.getId());
+
+                ChessBoard.ChessPiece.Color playerColor = parseColor(command.length > 1 ? command[1] : "white");
+                int depth = command.length > 2 ? Integer.parseInt(command[2]) : DEFAULT_DEPTH;
+
+                session = server.openSession(ChessBoard.ChessPiece.Color.getOpposingColor(playerColor), depth);
+                out.println("session " + session.getId());
+
+                if (session.isEngineToMove()) sendReply(server.requestEngineMove(session.getId()), out);
+                break;
+            case "move":
+                if (command.length < 2) throw new IllegalArgumentException("Missing move!");
+
+                sendReply(server.playMove(getSession().getId(), command[1]), out);
+                break;
+            case "go":
+                sendReply(server.requestEngineMove(getSession().getId()), out);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown command!");
+        }
+    }
+
+    private void sendReply(CompletableFuture<String> reply, PrintWriter out) {
+        try {
+            String move = reply.get();
+
+            if (move != null) out.println("move " + move);
+            if (session.getResult() != null) out.println("result " + session.getResult());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Logger.getLogger("global").log(Level.SEVERE, "Search failed!", e.getCause());
+            out.println("error Search failed!");
+        }
+    }
+
+    private GameSession getSession() {
+        if (session == null) throw new IllegalStateException("No game!");
+
+        return session;
+    }
+
+    private ChessBoard.ChessPiece.Color parseColor(String color) {
+        switch (color.toLowerCase(Locale.ROOT)) {
+            case "white":
+                return ChessBoard.ChessPiece.Color.WHITE;
+            case "black":
+                return ChessBoard.ChessPiece.Color.BLACK;
+            default:
+                throw new IllegalArgumentException("Unknown color!");
+        }
+    }
+}
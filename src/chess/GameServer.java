@@ -0,0 +1,193 @@
+package chess;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Headless host of many concurrent games against the engine.
+ * Sessions only hold their board, engine moves are searched on a bounded executor shared by all sessions
+ * with hash tables and evaluation caches shared by all sessions as well.
+ * Every session has at most one search queued, searches are run in the order they were requested and limited by the move time,
+ * so that a single game cannot keep the others waiting.
+ * Connected players are served by one virtual thread each, which mostly waits for the next move of the player,
+ * while searches only run on the platform threads of the search executor.
+ */
+public class GameServer {
+    public static final int DEFAULT_PORT = 7777;
+    public static final int DEFAULT_MAX_SESSIONS = 10_000;
+    public static final int DEFAULT_MAX_QUEUED_SEARCHES = 1_000;
+    public static final long DEFAULT_MOVE_TIME = 1_000;
+
+    private final Map<Long, GameSession> sessions;
+    private final Semaphore sessionPermits;
+    private final AtomicLong nextSessionId;
+    private final ThreadPoolExecutor searchExecutor;
+    private final ThreadFactory connectionThreads;
+    private final TranspositionTable transpositionTable;
+    private final EvaluationCache evaluationCache;
+    private final PawnHashTable pawnHashTable;
+    private final long moveTime;
+
+    public GameServer() {
+        this(DEFAULT_MAX_SESSIONS, DEFAULT_MAX_QUEUED_SEARCHES, DEFAULT_MOVE_TIME);
+    }
+
+    /**
+     * @param maxSessions number of sessions open at the same time, further sessions are refused
+     * @param maxQueuedSearches number of searches waiting for a thread, further requests are refused
+     * @param moveTime time limit of a single search in milliseconds
+     */
+    public GameServer(int maxSessions, int maxQueuedSearches, long moveTime) {
+        int searchThreads = Runtime.getRuntime().availableProcessors();
+
+        sessions = new ConcurrentHashMap<>();
+        sessionPermits = new Semaphore(maxSessions);
+        nextSessionId = new AtomicLong();
+        searchExecutor = new ThreadPoolExecutor(searchThreads, searchThreads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(maxQueuedSearches), MiniMaxAdversary.daemonThreads("game"));
+        connectionThreads = virtualThreads("connection");
+        transpositionTable = new TranspositionTable(TranspositionTable.DEFAULT_SIZE_IN_MEGABYTES);
+        evaluationCache = new EvaluationCache(EvaluationCache.DEFAULT_ENTRIES);
+        pawnHashTable = new PawnHashTable(PawnHashTable.DEFAULT_ENTRIES);
+        this.moveTime = moveTime;
+    }
+
+    /**
+     * Opens a new game, when the engine plays white its first move has to be requested with {@link #requestEngineMove(long)}
+     * @param engineColor color the engine plays
+     * @param depth maximal search depth of the engine
+     * @return opened session
+     * @throws IllegalStateException if the maximal number of sessions is open
+     */
+    public GameSession openSession(ChessBoard.ChessPiece.Color engineColor, int depth) {
+        if (depth < 1 || depth > MiniMaxAdversary.MAX_DEPTH) throw new IllegalArgumentException("Invalid depth!");
+        if (!sessionPermits.tryAcquire()) throw new IllegalStateException("Too many sessions!");
+
+        GameSession session = new GameSession(nextSessionId.incrementAndGet(), engineColor, depth, transpositionTable,
+            evaluationCache, pawnHashTable, moveTime);
+        sessions.put(session.getId(), session);
+
+        return session;
+    }
+
+    public GameSession getSession(long id) {
+        GameSession session = sessions.get(id);
+
+        if (session == null) throw new IllegalArgumentException("Such session does not exist!");
+
+        return session;
+    }
+
+    public void closeSession(long id) {
+        if (sessions.remove(id) != null) sessionPermits.release();
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Plays the move of the human player and requests the engine reply
+     * @param id session of the game
+     * @param notation move in coordinate notation, e.g. e2e4
+     * @return reply of the engine in coordinate notation, null when the game ended with the move
+     * @throws RejectedExecutionException if the move was played but too many searches are queued,
+     * the reply has to be requested again with {@link #requestEngineMove(long)}
+     */
+    public CompletableFuture<String> playMove(long id, String notation) {
+        GameSession session = getSession(id);
+        session.playMove(notation);
+
+        if (!session.isEngineToMove()) return CompletableFuture.completedFuture(null);
+
+        return requestEngineMove(id);
+    }
+
+    /**
+     * Queues the search of the engine move
+     * @param id session of the game
+     * @return move of the engine in coordinate notation
+     * @throws RejectedExecutionException if too many searches are queued
+     */
+    public CompletableFuture<String> requestEngineMove(long id) {
+        GameSession session = getSession(id);
+        CompletableFuture<String> reply = new CompletableFuture<>();
+
+        session.startThinking();
+
+        try {
+            searchExecutor.execute(() -> {
+                try {
+                    reply.complete(session.playEngineMove());
+                } catch (RuntimeException e) {
+                    reply.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            session.cancelThinking();
+            throw e;
+        }
+
+        return reply;
+    }
+
+    /**
+     * Closes sessions without any move for the specified time, sessions whose engine move is queued or searched are kept
+     * @param idleTime time in milliseconds
+     */
+    public void closeIdleSessions(long idleTime) {
+        long limit = System.currentTimeMillis() - idleTime;
+
+        for (GameSession session : sessions.values()) {
+            if (session.getLastActivity() < limit && !session.isEngineThinking()) closeSession(session.getId());
+        }
+    }
+
+    /**
+     * Accepts players on the port until the server socket fails, every connection plays one game, see {@link GameConnection}
+     * @param port TCP port to listen on
+     */
+    public void listen(int port) throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(port)) {
+            while (!serverSocket.isClosed()) {
+                Socket socket = serverSocket.accept();
+                connectionThreads.newThread(new GameConnection(this, socket)).start();
+            }
+        }
+    }
+
+    /**
+     * Virtual threads are looked up reflectively so that the game still compiles and runs on Java versions without them
+     * @return factory of virtual threads or of daemon platform threads if virtual threads are not available
+     */
+    static ThreadFactory virtualThreads(String name) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            Logger.getLogger("global").log(Level.INFO, "Virtual threads not available, using platform threads!");
+            return MiniMaxAdversary.daemonThreads(name);
+        }
+    }
+
+    public void shutdown() {
+        searchExecutor.shutdownNow();
+        sessions.clear();
+    }
+}
@@ -0,0 +1,129 @@
+package chess;
+
+/**
+ * Single game of a human against the engine hosted by a {@link GameServer}.
+ * Only the board of the game is kept between moves, searches borrow threads of the server.
+ */
+public class GameSession {
+    public static final String WHITE_WINS = "1-0";
+    public static final String BLACK_WINS = "0-1";
+    public static final String DRAW = "1/2-1/2";
+
+    private final long id;
+    private final ChessBoard board;
+    private final MiniMaxAdversary adversary;
+    private final ChessBoard.ChessPiece.Color engineColor;
+    private volatile long lastActivity;
+    private volatile String result;
+    private boolean isEngineThinking;
+
+    GameSession(long id, ChessBoard.ChessPiece.Color engineColor, int depth, TranspositionTable transpositionTable,
+                EvaluationCache evaluationCache, PawnHashTable pawnHashTable, long moveTime) {
+        this.id = id;
+        this.engineColor = engineColor;
+        board = ChessBoard.startingPosition();
+        adversary = new MiniMaxAdversary(engineColor, board, depth, true);
+        adversary.setTranspositionTable(transpositionTable);
+        adversary.setEvaluationCache(evaluationCache);
+        adversary.setPawnHashTable(pawnHashTable);
+        adversary.setMoveTime(moveTime);
+        board.setAdversary(adversary);
+        lastActivity = System.currentTimeMillis();
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public ChessBoard.ChessPiece.Color getEngineColor() {
+        return engineColor;
+    }
+
+    /**
+     * @return time of the last move or of opening the session in milliseconds since the epoch
+     */
+    public long getLastActivity() {
+        return lastActivity;
+    }
+
+    /**
+     * @return one of WHITE_WINS, BLACK_WINS, DRAW or null while the game is still running
+     */
+    public String getResult() {
+        return result;
+    }
+
+    public SearchStatistics getLastStatistics() {
+        return adversary.getLastStatistics();
+    }
+
+    public synchronized boolean isEngineToMove() {
+        return result == null && board.getColorToMove() == engineColor;
+    }
+
+    /**
+     * Plays the move of the human player
+     * @param notation move in coordinate notation, e.g. e2e4
+     * @throws IllegalStateException if the game is over or it is not the turn of the human player
+     * @throws IllegalArgumentException if the move is not valid
+     */
+    public synchronized void playMove(String notation) {
+        if (result != null) throw new IllegalStateException("Game is over!");
+        if (board.getColorToMove() == engineColor || isEngineThinking) throw new IllegalStateException("Not your turn!");
+
+        int move = Moves.parse(board, notation);
+
+        if (move == Moves.NO_MOVE) throw new IllegalArgumentException("Invalid move!");
+
+        makeMove(move);
+    }
+
+    /**
+     * Marks that a search for the engine move was scheduled so that no other one is
+     * @throws IllegalStateException if it is not the turn of the engine or it is already thinking
+     */
+    synchronized void startThinking() {
+        if (!isEngineToMove() || isEngineThinking) throw new IllegalStateException("Not engine's turn!");
+
+        isEngineThinking = true;
+    }
+
+    /**
+     * @return whether a search for the engine move is queued or running
+     */
+    public synchronized boolean isEngineThinking() {
+        return isEngineThinking;
+    }
+
+    synchronized void cancelThinking() {
+        isEngineThinking = false;
+    }
+
+    /**
+     * Searches and plays the engine move, the board is not changed by anyone else while thinking
+     * @return played move in coordinate notation
+     */
+    String playEngineMove() {
+        try {
+            int move = Moves.encode(adversary.chooseMove());
+
+            synchronized (this) {
+                makeMove(move);
+            }
+
+            return Moves.toString(move);
+        } finally {
+            cancelThinking();
+        }
+    }
+
+    private void makeMove(int move) {
+        board.makeMove(move);
+        lastActivity = System.currentTimeMillis();
+
+        if (board.cannotMove(board.getColorToMove())) {
+            if (!board.isInCheck()) result = DRAW;
+            else result = board.getColorToMove() == ChessBoard.ChessPiece.Color.WHITE ? BLACK_WINS : WHITE_WINS;
+        }
+    }
+}
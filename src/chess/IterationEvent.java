@@ -0,0 +1,31 @@
+package chess;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning one iteration of iterative deepening
+ */
+@Name("chess.SearchIteration")
+@Label("Search Iteration")
+@Category({"Chess", "Engine"})
+@Description("Search of all root moves to one depth")
+public class IterationEvent extends Event {
+    @Label("Depth")
+    int depth;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Best Move")
+    String bestMove;
+
+    @Label("Evaluation")
+    int evaluation;
+
+    @Label("Pondering")
+    boolean pondering;
+}
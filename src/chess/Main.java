@@ -1,10 +1,50 @@
 package chess;
 
 import java.awt.*;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 
 public class Main {
     
-    public static void main(String[] args) {
+    /**
+     * Starts the game window, or with arguments "--server [port]" a headless {@link GameServer}
+     * or with "--http [port]" the {@link AnalysisServer} or with "--batch ..." the {@link BatchAnalyser}
+     * or with "--tournament ..." a self-play {@link Tournament} or with "--tune ..." the {@link EvaluationTuner}
+     * or with "--analyse [fen]" the {@link AnalysisFrame} of the starting or given position
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("--server")) {
+            new GameServer().listen(args.length > 1 ? Integer.parseInt(args[1]) : GameServer.DEFAULT_PORT);
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("--batch")) {
+            BatchAnalyser.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("--tournament")) {
+            Tournament.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("--tune")) {
+            EvaluationTuner.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("--http")) {
+            new AnalysisServer(args.length > 1 ? Integer.parseInt(args[1]) : AnalysisServer.DEFAULT_PORT).start();
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("--analyse")) {
+            ChessBoard board = args.length > 1 ? ChessBoard.fromFen(String.join(" ", Arrays.copyOfRange(args, 1, args.length))) : ChessBoard.startingPosition();
+            EventQueue.invokeLater(() -> new AnalysisFrame(board, List.of()).setVisible(true));
+            return;
+        }
+
         EventQueue.invokeLater(() -> {
             ChessFrame frame = new ChessFrame(ChessBoard.startingPosition());
             frame.setVisible(true);
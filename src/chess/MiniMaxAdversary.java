@@ -1,7 +1,16 @@
 package chess;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -9,56 +18,388 @@ import static chess.ChessBoard.ChessPiece.*;
 import static chess.ChessBoard.ChessPiece.Color.*;
 
 public class MiniMaxAdversary extends ComputerAdversary {
-    private ChessBoard.Field.Move moveToMake;
-    private final Thread[] threads;
-    private int bestEvaluation;
+    public static final int MAX_DEPTH = 63;
+    public static final int MATE = 100000;
     private static final int NUMBER_OF_THREADS = 4;
+    private static final int MAX_PLY = MAX_DEPTH + 1;
+    private static final int TABLEBASE_WIN = 20000;
+    private static final int HASH_MOVE_BONUS = 1 << 20;
+    private static final int TIME_CHECK_INTERVAL = 1024;
+    private static final ExecutorService SEARCH_THREADS = Executors.newFixedThreadPool(Math.max(NUMBER_OF_THREADS, Runtime.getRuntime().availableProcessors()), daemonThreads("search"));
+    private static final ExecutorService PONDER_THREAD = Executors.newSingleThreadExecutor(daemonThreads("ponder"));
+    private static final ThreadLocal<SearchBuffers> SEARCH_BUFFERS = ThreadLocal.withInitial(SearchBuffers::new);
     private boolean usesPieceTables;
     private final int depth;
+    private OpeningBook openingBook;
+    private final EndgameTablebase tablebase;
+    private final List<SearchListener> searchListeners;
+    private TranspositionTable transpositionTable;
+    private TranspositionTable[] threadTranspositionTables;
+    private PawnHashTable pawnHashTable;
+    private EvaluationCache evaluationCache;
+    private NeuralNetwork neuralNetwork;
+    private SearchResultCache resultCache;
+    private long moveTime;
+    private boolean isDeterministic;
+    private int lineCount = 1;
+    private SearchStatistics statistics;
+    private volatile Search runningSearch;
+    private volatile boolean isStopRequested;
+    private Search ponderSearch;
+    private Future<?> ponderTask;
 
     public MiniMaxAdversary(ChessBoard.ChessPiece.Color color, ChessBoard board, int depth, boolean usesPieceTables) {
         super(color, board);
         this.depth = depth;
-        threads = new Thread[NUMBER_OF_THREADS];
         this.usesPieceTables = usesPieceTables;
+        openingBook = OpeningBook.getDefault();
+        tablebase = EndgameTablebase.getDefault();
+        resultCache = SearchResultCache.getDefault();
+        searchListeners = new CopyOnWriteArrayList<>();
+    }
+
+    public void addSearchListener(SearchListener listener) {
+        searchListeners.add(listener);
+    }
+
+    public void removeSearchListener(SearchListener listener) {
+        searchListeners.remove(listener);
+    }
+
+    /**
+     * @return statistics of the last chooseMove call or null if no move was chosen yet
+     */
+    public SearchStatistics getLastStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Table is created with the default size on first search unless one is set before
+     * @return transposition table used by this adversary
+     */
+    public TranspositionTable getTranspositionTable() {
+        if (transpositionTable == null) {
+            transpositionTable = new TranspositionTable(TranspositionTable.DEFAULT_SIZE_IN_MEGABYTES);
+        }
+
+        return transpositionTable;
+    }
+
+    public void setTranspositionTable(TranspositionTable transpositionTable) {
+        this.transpositionTable = transpositionTable;
+    }
+
+    /**
+     * Deterministic searches give every search thread its own table, so that no thread sees entries stored by another one
+     */
+    private TranspositionTable[] getThreadTranspositionTables() {
+        if (threadTranspositionTables == null) {
+            threadTranspositionTables = new TranspositionTable[NUMBER_OF_THREADS];
+
+            for (int i = 0; i < NUMBER_OF_THREADS; i++) {
+                threadTranspositionTables[i] = new TranspositionTable(Math.max(1, TranspositionTable.DEFAULT_SIZE_IN_MEGABYTES / NUMBER_OF_THREADS));
+            }
+        }
+
+        return threadTranspositionTables;
+    }
+
+    /**
+     * Pawn structure is only evaluated by adversaries using piece tables, the table is created on their first search
+     * @return pawn hash table used by this adversary
+     */
+    public PawnHashTable getPawnHashTable() {
+        if (pawnHashTable == null) {
+            pawnHashTable = new PawnHashTable(PawnHashTable.DEFAULT_ENTRIES);
+        }
+
+        return pawnHashTable;
+    }
+
+    /**
+     * Pawn structure evaluations do not depend on the adversary, so one table can be shared by any number of adversaries
+     */
+    public void setPawnHashTable(PawnHashTable pawnHashTable) {
+        this.pawnHashTable = pawnHashTable;
+    }
+
+    /**
+     * Replaces material, piece tables and pawn structure by the network's evaluation.
+     * Results of network searches are not kept in the search result cache.
+     * @param neuralNetwork network to evaluate positions with or null for the classical evaluation
+     */
+    public void setNeuralNetwork(NeuralNetwork neuralNetwork) {
+        this.neuralNetwork = neuralNetwork;
+        evaluationCache = null;
+    }
+
+    /**
+     * Cache is created with the default size on first search
+     * @return cache of leaf evaluations used by this adversary
+     */
+    public EvaluationCache getEvaluationCache() {
+        if (evaluationCache == null) {
+            evaluationCache = new EvaluationCache(EvaluationCache.DEFAULT_ENTRIES);
+        }
+
+        return evaluationCache;
+    }
+
+    /**
+     * Cached evaluations depend on the evaluation used, so a cache may only be shared by adversaries evaluating alike,
+     * such as classical adversaries using piece tables. Setting a neural network drops the cache.
+     */
+    public void setEvaluationCache(EvaluationCache evaluationCache) {
+        this.evaluationCache = evaluationCache;
+    }
+
+    /**
+     * @param openingBook book consulted before searching, null for always searching
+     */
+    public void setOpeningBook(OpeningBook openingBook) {
+        this.openingBook = openingBook;
+    }
+
+    /**
+     * @param resultCache cache of finished searches consulted before searching, null for always searching
+     */
+    public void setResultCache(SearchResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    /**
+     * Limits the time of a single search, the best move of the last completed iteration is played when it runs out.
+     * The first iteration is always completed.
+     * @param moveTime time limit in milliseconds, 0 for searching up to the full depth
+     */
+    public void setMoveTime(long moveTime) {
+        this.moveTime = moveTime;
+    }
+
+    /**
+     * Multi-PV mode keeps the best lines instead of only the best move, they are read from {@link SearchStatistics#getLines()}.
+     * All lines come from one search: the root window is only narrowed to the evaluation of the worst kept line,
+     * so other root moves are still cut off as soon as they are proven worse than all kept lines.
+     * Results of multi-PV searches are not kept in the search result cache.
+     * @param lineCount number of best root moves evaluated exactly, 1 for searching only the best move
+     */
+    public void setLineCount(int lineCount) {
+        if (lineCount < 1) throw new IllegalArgumentException("Invalid line count!");
+
+        this.lineCount = lineCount;
+    }
+
+    /**
+     * In deterministic mode the same position searched by an adversary with the same history gives the same move and node count.
+     * The root moves are still split among the fixed number of search threads, but every thread uses its own transposition table
+     * and the move time limit, pondering and the search result cache are not used.
+     * Book moves are chosen by the adversary's random numbers, which are reproducible after {@link #setSeed}.
+     * The thread transposition tables are created when the mode is enabled.
+     */
+    public void setDeterministic(boolean isDeterministic) {
+        this.isDeterministic = isDeterministic;
+        if (isDeterministic) getThreadTranspositionTables();
     }
 
     @Override
     public ChessBoard.Field.Move chooseMove() {
-        bestEvaluation = color == ChessBoard.ChessPiece.Color.WHITE ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+        SearchEvent event = new SearchEvent();
+        event.begin();
+
+        boolean isProfiled = AllocationProfiler.isEnabled();
+        long allocatedBefore = AllocationProfiler.currentThreadAllocatedBytes();
+        long gcPauseTimeBefore = AllocationProfiler.getGcPauseTime();
+        long gcCountBefore = AllocationProfiler.getGcCount();
 
-        for (int i = 0; i < NUMBER_OF_THREADS; i++) {
-            ChessBoard copiedChessBoard = new ChessBoard(board);
-            List<ChessBoard.Field.Move> startingMoves = getPart(copiedChessBoard.getAllValidMoves(board.getColorToMove()), i);
+        ChessBoard.Field.Move move = findBestMove();
 
-            threads[i] = new Thread(() -> {
-                minimax(copiedChessBoard, startingMoves, depth, board.getColorToMove() == WHITE, Integer.MIN_VALUE, Integer.MAX_VALUE);
-            });
+        if (isProfiled) {
+            statistics.finishProfile(AllocationProfiler.currentThreadAllocatedBytes() - allocatedBefore,
+                AllocationProfiler.getGcPauseTime() - gcPauseTimeBefore, AllocationProfiler.getGcCount() - gcCountBefore);
+            Logger.getLogger("global").log(Level.INFO, String.format(Locale.ROOT, "Search allocated %d bytes, %.1f per node, GC paused %d ms in %d collections",
+                statistics.getAllocatedBytes(), statistics.getAllocatedBytesPerNode(), statistics.getGcPauseTime(), statistics.getGcCount()));
         }
 
-        for (Thread thread : threads) {
-            thread.start();
+        notifySearchListeners(statistics);
+
+        if (event.shouldCommit()) {
+            event.source = statistics.getSource();
+            event.depth = statistics.getDepth();
+            event.nodes = statistics.getNodes();
+            event.chosenMove = move == null ? null : Moves.toString(statistics.getBestMove());
+            event.evaluation = statistics.getEvaluation();
+            event.commit();
         }
 
-        for(Thread thread : threads) {
-            try {
-                thread.join();
-            } catch(InterruptedException e) {
-                Logger.getLogger("global").log(Level.SEVERE,"Thread interrupted!", e);
+        return move;
+    }
+
+    private ChessBoard.Field.Move findBestMove() {
+        Search search = takePonderSearch();
+
+        if (search == null) {
+            if (openingBook != null) {
+                ChessBoard.Field.Move bookMove = openingBook.findMove(board, random);
+
+                if (bookMove != null) return finishWithoutSearch(SearchStatistics.BOOK, bookMove);
+            }
+
+            if (tablebase != null) {
+                ChessBoard.Field.Move tablebaseMove = tablebase.findMove(board);
+
+                if (tablebaseMove != null) return finishWithoutSearch(SearchStatistics.TABLEBASE, tablebaseMove);
+            }
+
+            if (usesResultCache()) {
+                SearchResultCache.Result cachedResult = resultCache.get(board.getHash(), depth, moveTime, usesPieceTables);
+
+                if (cachedResult != null && isValidMove(board, cachedResult.getMove())) return finishFromCache(cachedResult);
             }
+
+            search = new Search(new ChessBoard(board), new SearchStatistics(SearchStatistics.SEARCH, NUMBER_OF_THREADS), true, isDeterministic ? 0 : moveTime);
+            runningSearch = search;
+            if (isStopRequested) search.stop();
+            search.run();
+            runningSearch = null;
+        }
+
+        if (usesResultCache() && search.bestMove != Moves.NO_MOVE && !isStopRequested) {
+            resultCache.put(board.getHash(), depth, moveTime, usesPieceTables,
+                new SearchResultCache.Result(search.bestMove, search.bestEvaluation, search.statistics.getDepth(), search.principalVariation));
+        }
+
+        isStopRequested = false;
+
+        statistics = search.statistics;
+
+        return search.bestMove == Moves.NO_MOVE ? null : board.toMove(search.bestMove);
+    }
+
+    private boolean usesResultCache() {
+        return resultCache != null && neuralNetwork == null && !isDeterministic && lineCount == 1;
+    }
+
+    /**
+     * Ends the running search, or the next one when no search is running, as if its time was up.
+     * chooseMove then returns the best move of the last completed iteration, of the root moves searched so far when not even the first one
+     * was completed, or null when no root move was searched yet.
+     * Searches stopped this way are not kept in the search result cache. May be called from any thread.
+     */
+    public void stopSearch() {
+        isStopRequested = true;
+        Search search = runningSearch;
+
+        if (search != null) search.stop();
+    }
+
+    private ChessBoard.Field.Move finishWithoutSearch(String source, ChessBoard.Field.Move move) {
+        statistics = new SearchStatistics(source, 0);
+        statistics.finish(Moves.encode(move), 0, new int[0]);
+
+        return move;
+    }
+
+    private ChessBoard.Field.Move finishFromCache(SearchResultCache.Result cachedResult) {
+        statistics = new SearchStatistics(SearchStatistics.CACHE, 0);
+        statistics.completeIteration(cachedResult.getDepth(),
+            new SearchStatistics.Line[]{new SearchStatistics.Line(cachedResult.getMove(), cachedResult.getEvaluation(), cachedResult.getPrincipalVariation())});
+        statistics.finish(cachedResult.getMove(), cachedResult.getEvaluation(), cachedResult.getPrincipalVariation());
+
+        return board.toMove(cachedResult.getMove());
+    }
+
+    private void notifySearchListeners(SearchStatistics statistics) {
+        for (SearchListener listener : searchListeners) {
+            listener.onUpdate(statistics);
+        }
+    }
+
+    /**
+     * Starts searching the position after the reply expected by the principal variation of the last search.
+     * Has to be called after the chosen move was made on the board.
+     */
+    @Override
+    public void startPondering() {
+        stopPondering();
+
+        if (statistics == null || isDeterministic) return;
+
+        int[] principalVariation = statistics.getPrincipalVariation();
+
+        if (principalVariation.length < 2) return;
+
+        ChessBoard position = new ChessBoard(board);
+        int expectedReply = principalVariation[1];
+
+        if (!isValidMove(position, expectedReply)) return;
+
+        position.makeMove(expectedReply);
+
+        Search search = new Search(position, new SearchStatistics(SearchStatistics.PONDER, NUMBER_OF_THREADS), false, 0);
+        ponderSearch = search;
+        ponderTask = PONDER_THREAD.submit(search::run);
+    }
+
+    @Override
+    public void stopPondering() {
+        if (ponderSearch != null) {
+            ponderSearch.stop();
+            awaitPondering();
+        }
+    }
+
+    /**
+     * Ends pondering, keeping the ponder search when the opponent played the expected reply.
+     * On a ponder hit the search continues for the move time, so that the time spent pondering is gained instead of waiting for the full depth.
+     * @return finished ponder search of the current position or null on a ponder miss
+     */
+    private Search takePonderSearch() {
+        if (ponderSearch == null) return null;
+
+        Search search = ponderSearch;
+        boolean isPonderHit = search.position.getHash() == board.getHash() && search.position.getColorToMove() == board.getColorToMove();
+
+        if (!isPonderHit) search.stop();
+        else if (moveTime != 0) search.limitTime(moveTime);
+
+        awaitPondering();
+
+        return isPonderHit && search.bestMove != Moves.NO_MOVE ? search : null;
+    }
+
+    private void awaitPondering() {
+        try {
+            ponderTask.get();
+        } catch (InterruptedException e) {
+            Logger.getLogger("global").log(Level.SEVERE, "Thread interrupted!", e);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Logger.getLogger("global").log(Level.SEVERE, "Pondering failed!", e.getCause());
         }
 
-        return moveToMake;
+        ponderSearch = null;
+        ponderTask = null;
     }
 
-    private List<ChessBoard.Field.Move> getPart(List<ChessBoard.Field.Move> moves, int number) {
-        List<ChessBoard.Field.Move> parts = new ArrayList<>();
+    private boolean isValidMove(ChessBoard board, int move) {
+        int[] validMoves = new int[ChessBoard.MAX_MOVES];
+        int validMoveCount = board.generateMoves(validMoves);
 
-        for(int i = 0; i < moves.size(); i++) {
-            if(i % NUMBER_OF_THREADS == number) parts.add(moves.get(i));
+        for (int i = 0; i < validMoveCount; i++) {
+            if (validMoves[i] == move) return true;
         }
 
-        return parts;
+        return false;
+    }
+
+    private int[] getPart(int[] moves, int count, int number) {
+        int[] part = new int[(count - number + NUMBER_OF_THREADS - 1) / NUMBER_OF_THREADS];
+
+        for(int i = number; i < count; i += NUMBER_OF_THREADS) {
+            part[i / NUMBER_OF_THREADS] = moves[i];
+        }
+
+        return part;
     }
 
     @Override
@@ -66,105 +407,525 @@ public class MiniMaxAdversary extends ComputerAdversary {
         return Piece.QUEEN;
     }
 
-    private int minimax(ChessBoard board, List<ChessBoard.Field.Move> startingMoves, int depth, boolean maximizingPlayer, int alpha, int beta) {
+    private int minimax(ChessBoard board, SearchBuffers buffers, int[] startingMoves, int depth, int ply, boolean maximizingPlayer, int alpha, int beta) {
+        Search search = buffers.search;
+        search.statistics.countNode(buffers.threadIndex, ply);
+        buffers.principalVariationLength[ply] = ply;
+
+        if(++buffers.nodes % TIME_CHECK_INTERVAL == 0) {
+            search.checkTime(buffers);
+        }
+
+        if(search.isStopped) {
+            return 0;
+        }
+
+        if(tablebase != null && ply != 0 && board.getPieceCount() <= EndgameTablebase.MAX_PIECES) {
+            int wdl = tablebase.probeWdl(board);
+
+            if(wdl != EndgameTablebase.UNKNOWN) {
+                boolean isDecided = wdl == EndgameTablebase.WIN || wdl == EndgameTablebase.LOSS;
+                int dtz = isDecided ? tablebase.probeDtz(board) : 0;
+
+                // without a distance won positions are searched on, so that mates within the horizon are found
+                if(dtz != EndgameTablebase.UNKNOWN || depth == 0) return tablebaseEvaluation(board, wdl, dtz, ply);
+            }
+        }
+
         if(depth == 0) {
-            return evaluate(board);
+            return evaluate(board, buffers);
+        }
+
+        int hashMove = ply == 0 ? search.bestMove : Moves.NO_MOVE;
+
+        if(ply != 0) {
+            long entry = buffers.transpositionTable.probe(board.getHash());
+            search.statistics.countTranspositionProbe(buffers.threadIndex, entry != TranspositionTable.NO_ENTRY);
+
+            if(entry != TranspositionTable.NO_ENTRY) {
+                hashMove = TranspositionTable.getMove(entry);
+
+                if(TranspositionTable.getDepth(entry) >= depth) {
+                    int score = fromTranspositionScore(TranspositionTable.getScore(entry), ply);
+                    int bound = TranspositionTable.getBound(entry);
+
+                    if(bound == TranspositionTable.EXACT) return score;
+                    if(bound == TranspositionTable.LOWER_BOUND) alpha = Math.max(alpha, score);
+                    if(bound == TranspositionTable.UPPER_BOUND) beta = Math.min(beta, score);
+                    if(beta <= alpha) return score;
+                }
+            }
         }
 
+        int[] moves = ply == 0 ? startingMoves : buffers.moves[ply];
+        int moveCount = ply == 0 ? startingMoves.length : board.generateMoves(moves);
+
+        if(moveCount == 0) {
+            if(!board.isInCheck()) return 0;
+
+            return maximizingPlayer ? -(MATE - ply) : MATE - ply;
+        }
+
+        orderMoves(board, moves, buffers.scores[ply], moveCount, hashMove);
+
+        int originalAlpha = alpha;
+        int originalBeta = beta;
+        int bestMove = Moves.NO_MOVE;
+        int bestEvaluation;
+        int searched = 0;
+
         if(maximizingPlayer) {
             int maximumEvaluation = Integer.MIN_VALUE;
             int currentEvaluation;
-            List<ChessBoard.Field.Move> moves = this.depth == depth ? startingMoves : board.getAllValidMoves(board.getColorToMove());
-            orderMoves(board, moves);
 
-            for(ChessBoard.Field.Move move : moves) {
-                int positionValueChange = usesPieceTables ? PieceTables.evaluateMovePositionChange(board, move) : 0;
+            for(int i = 0; i < moveCount; i++) {
+                int move = moves[i];
+                int positionValueChange = search.addsPieceTables ? PieceTables.evaluateMovePositionChange(board, move) : 0;
 
                 board.makeMove(move);
-                currentEvaluation = positionValueChange + minimax(board, startingMoves, depth - 1, false, alpha, beta);
+                currentEvaluation = addPositionValueChange(minimax(board, buffers, startingMoves, depth - 1, ply + 1, false, alpha, beta), positionValueChange);
                 board.unmakeMove(move);
 
-                maximumEvaluation = Math.max(maximumEvaluation, currentEvaluation);
+                if(search.isStopped) return 0;
 
-                if(this.depth == depth && currentEvaluation > bestEvaluation) {
-                    bestEvaluation = currentEvaluation;
-                    moveToMake = move;
+                if(currentEvaluation > maximumEvaluation) {
+                    maximumEvaluation = currentEvaluation;
+                    bestMove = move;
+                    updatePrincipalVariation(buffers, ply, move);
                 }
 
-                alpha = Math.max(alpha, currentEvaluation);
+                if(ply == 0) alpha = search.offerRootMove(move, currentEvaluation, alpha, buffers);
+                else alpha = Math.max(alpha, currentEvaluation);
+                searched++;
+
+                if(ply == 0 && search.notifiesListeners) notifySearchListeners(search.statistics);
 
                 if(beta <= alpha) break;
             }
 
-            return maximumEvaluation;
+            bestEvaluation = maximumEvaluation;
         }
 
         else {
             int minimumEvaluation = Integer.MAX_VALUE;
             int currentEvaluation;
-            List<ChessBoard.Field.Move> moves = this.depth == depth ? startingMoves : board.getAllValidMoves(board.getColorToMove());
-            orderMoves(board, moves);
 
-            for(ChessBoard.Field.Move move : moves) {
-                int positionValueChange = usesPieceTables ? PieceTables.evaluateMovePositionChange(board, move) : 0;
+            for(int i = 0; i < moveCount; i++) {
+                int move = moves[i];
+                int positionValueChange = search.addsPieceTables ? PieceTables.evaluateMovePositionChange(board, move) : 0;
                 board.makeMove(move);
-                currentEvaluation = positionValueChange + minimax(board, startingMoves, depth - 1, true, alpha, beta);
+                currentEvaluation = addPositionValueChange(minimax(board, buffers, startingMoves, depth - 1, ply + 1, true, alpha, beta), -positionValueChange);
                 board.unmakeMove(move);
 
-                minimumEvaluation = Math.min(currentEvaluation, minimumEvaluation);
+                if(search.isStopped) return 0;
 
-                if(this.depth == depth && currentEvaluation < bestEvaluation) {
-                    bestEvaluation = currentEvaluation;
-                    moveToMake = move;
+                if(currentEvaluation < minimumEvaluation) {
+                    minimumEvaluation = currentEvaluation;
+                    bestMove = move;
+                    updatePrincipalVariation(buffers, ply, move);
                 }
 
-                beta = Math.min(beta, currentEvaluation);
+                if(ply == 0) beta = search.offerRootMove(move, currentEvaluation, beta, buffers);
+                else beta = Math.min(beta, currentEvaluation);
+                searched++;
+
+                if(ply == 0 && search.notifiesListeners) notifySearchListeners(search.statistics);
 
                 if(beta <= alpha) break;
             }
 
-            return minimumEvaluation;
+            bestEvaluation = minimumEvaluation;
+        }
+
+        search.statistics.countInteriorNode(buffers.threadIndex, searched, beta <= alpha);
+
+        if(ply != 0) {
+            int bound = bestEvaluation >= originalBeta ? TranspositionTable.LOWER_BOUND : bestEvaluation <= originalAlpha ? TranspositionTable.UPPER_BOUND : TranspositionTable.EXACT;
+            buffers.transpositionTable.store(board.getHash(), bestMove, toTranspositionScore(bestEvaluation, ply), depth, bound);
         }
+
+        return bestEvaluation;
+    }
+
+    /**
+     * Adds piece-square change of a move to the evaluation of the position it leads to, mate and tablebase scores are kept exact
+     */
+    private static int addPositionValueChange(int score, int positionValueChange) {
+        return isDecisive(score) ? score : score + positionValueChange;
     }
 
-    private void orderMoves(ChessBoard board, List<ChessBoard.Field.Move> moves) {
-        moves.forEach(move -> guessValue(board, move));
+    private static boolean isDecisive(int score) {
+        return Math.abs(score) > TABLEBASE_WIN / 2;
+    }
+
+    /**
+     * Mate and tablebase scores are stored relative to the node so that they stay valid when the position is reached at another ply
+     */
+    private int toTranspositionScore(int score, int ply) {
+        if(!isDecisive(score)) return score;
+
+        return score > 0 ? score + ply : score - ply;
+    }
+
+    private int fromTranspositionScore(int score, int ply) {
+        if(!isDecisive(score)) return score;
+
+        return score > 0 ? score - ply : score + ply;
+    }
+
+    private void updatePrincipalVariation(SearchBuffers buffers, int ply, int move) {
+        int[] line = buffers.principalVariation[ply];
+        int childLength = buffers.principalVariationLength[ply + 1];
+
+        line[ply] = move;
+        System.arraycopy(buffers.principalVariation[ply + 1], ply + 1, line, ply + 1, childLength - ply - 1);
+        buffers.principalVariationLength[ply] = Math.max(childLength, ply + 1);
+    }
 
-        int sign = board.getColorToMove() == WHITE ? -1 : 1;
+    /**
+     * Sorts moves by their guessed value, most promising first
+     * @param moves moves to sort
+     * @param scores buffer for guessed values, sorted along with the moves
+     * @param moveCount number of moves in the buffer
+     * @param hashMove best move found for the position before, searched first
+     */
+    private void orderMoves(ChessBoard board, int[] moves, int[] scores, int moveCount, int hashMove) {
+        for (int i = 0; i < moveCount; i++) {
+            int move = moves[i];
+            int score = move == hashMove ? HASH_MOVE_BONUS : guessValue(board, move);
+            int j = i;
+
+            while (j > 0 && scores[j - 1] < score) {
+                moves[j] = moves[j - 1];
+                scores[j] = scores[j - 1];
+                j--;
+            }
 
-        moves.sort((m1, m2) -> sign * (m1.getGuessedValue() - m2.getGuessedValue()));
+            moves[j] = move;
+            scores[j] = score;
+        }
     }
 
-    private void guessValue(ChessBoard board, ChessBoard.Field.Move move) {
+    private int guessValue(ChessBoard board, int move) {
         int guessedValue = 0;
-        ChessBoard.ChessPiece.Piece capturePieceType = board.getField(move.getPosition()).getChessPiece().getPiece();
+        int to = Moves.getTo(move);
+        ChessBoard.ChessPiece.Piece capturePieceType = board.getPiece(to);
 
         guessedValue += capturePieceType.getValue();
 
-        if(move.getSpecialMove() == SpecialMove.PROMOTION) {
-            guessedValue += choosePromotion().getValue();
+        if(Moves.getSpecialMove(move) == SpecialMove.PROMOTION) {
+            guessedValue += Moves.getPromotion(move).getValue();
+        }
+
+        return guessedValue;
+    }
+
+    /**
+     * Converts tablebase result of the side to move into evaluation from white perspective.
+     * Like mates, wins are scored by their distance from the root: the ply plus the distance to zeroing when known,
+     * otherwise plus how far the losing king is from the edge and from the winning king
+     * @param board probed position
+     * @param wdl tablebase result, cursed wins and blessed losses are scored as draws
+     * @param dtz distance to zeroing of the position or UNKNOWN
+     * @param ply distance of the position from the root
+     * @return evaluation of the position
+     */
+    private int tablebaseEvaluation(ChessBoard board, int wdl, int dtz, int ply) {
+        int distance = ply + (dtz == EndgameTablebase.UNKNOWN ? drivingDistance(board, wdl) : dtz);
+        int evaluation = wdl == EndgameTablebase.WIN ? TABLEBASE_WIN - distance : wdl == EndgameTablebase.LOSS ? distance - TABLEBASE_WIN : 0;
+
+        return board.getColorToMove() == WHITE ? evaluation : -evaluation;
+    }
+
+    /**
+     * Guess of the distance to mate without a distance to zeroing, the losing king has to be driven to the edge by the winning king
+     */
+    private int drivingDistance(ChessBoard board, int wdl) {
+        ChessBoard.ChessPiece.Color losingColor = wdl == EndgameTablebase.WIN ? ChessBoard.ChessPiece.Color.getOpposingColor(board.getColorToMove()) : board.getColorToMove();
+        int losingKing = board.getKingSquare(losingColor);
+        int winningKing = board.getKingSquare(ChessBoard.ChessPiece.Color.getOpposingColor(losingColor));
+        int row = Moves.getRow(losingKing);
+        int column = Moves.getColumn(losingKing);
+        int edgeDistance = Math.min(Math.min(row, 7 - row), Math.min(column, 7 - column));
+        int kingDistance = Math.max(Math.abs(row - Moves.getRow(winningKing)), Math.abs(column - Moves.getColumn(winningKing)));
+
+        return 4 * edgeDistance + kingDistance;
+    }
+
+    private int evaluate(ChessBoard board, SearchBuffers buffers) {
+        Search search = buffers.search;
+        int evaluation = search.evaluationCache.probe(board.getHash());
+        search.statistics.countEvaluationCacheProbe(buffers.threadIndex, evaluation != EvaluationCache.NO_ENTRY);
+
+        if (evaluation != EvaluationCache.NO_ENTRY) return evaluation;
+
+        if (search.neuralNetwork != null) {
+            evaluation = buffers.accumulator.evaluate(board);
+        } else {
+            evaluation = BoardEvaluation.material(board);
+
+            if (search.pawnHashTable != null) evaluation += search.pawnHashTable.evaluate(board);
         }
 
-        move.setGuessedValue(guessedValue);
+        search.evaluationCache.store(board.getHash(), evaluation);
+
+        return evaluation;
     }
 
-    private int evaluate(ChessBoard board) {
-        return countMaterial(board, WHITE) - countMaterial(board, BLACK);
+    static ThreadFactory daemonThreads(String name) {
+        AtomicInteger threadNumber = new AtomicInteger();
+
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
     }
 
-    private int countMaterial(ChessBoard board, Color color) {
-        int material = 0;
+    /**
+     * Iterative deepening search of one position, root moves of every iteration are split among the search threads
+     */
+    private class Search {
+        private final ChessBoard position;
+        private final SearchStatistics statistics;
+        private final boolean notifiesListeners;
+        private final TranspositionTable[] transpositionTables;
+        private final PawnHashTable pawnHashTable;
+        private final EvaluationCache evaluationCache;
+        private final NeuralNetwork neuralNetwork;
+        private final boolean addsPieceTables;
+        private final long moveTime;
+        private volatile long deadline = Long.MAX_VALUE;
+        private volatile boolean isStopped;
+        private int bestMove = Moves.NO_MOVE;
+        private int bestEvaluation;
+        private int[] principalVariation = new int[0];
+        private final int lineCount;
+        private final int[] threadLineCounts = new int[NUMBER_OF_THREADS];
+        private final int[][] threadMoves;
+        private final int[][] threadEvaluations;
+        private final int[][][] threadVariations;
+
+        private Search(ChessBoard position, SearchStatistics statistics, boolean notifiesListeners, long moveTime) {
+            this.position = position;
+            this.statistics = statistics;
+            this.notifiesListeners = notifiesListeners;
+            this.moveTime = moveTime;
+            lineCount = MiniMaxAdversary.this.lineCount;
+            threadMoves = new int[NUMBER_OF_THREADS][lineCount];
+            threadEvaluations = new int[NUMBER_OF_THREADS][lineCount];
+            threadVariations = new int[NUMBER_OF_THREADS][lineCount][];
+            transpositionTables = new TranspositionTable[NUMBER_OF_THREADS];
+
+            for (int i = 0; i < NUMBER_OF_THREADS; i++) {
+                transpositionTables[i] = isDeterministic ? getThreadTranspositionTables()[i] : getTranspositionTable();
+            }
+
+            neuralNetwork = MiniMaxAdversary.this.neuralNetwork;
+            addsPieceTables = usesPieceTables && neuralNetwork == null;
+            pawnHashTable = addsPieceTables ? getPawnHashTable() : null;
+            evaluationCache = getEvaluationCache();
+        }
+
+        private void run() {
+            boolean maximizingPlayer = position.getColorToMove() == WHITE;
+            int[] validMoves = new int[ChessBoard.MAX_MOVES];
+            int validMoveCount = position.generateMoves(validMoves);
+            ChessBoard.Snapshot root = position.snapshot();
+
+            for (int iterationDepth = 1; iterationDepth <= depth && validMoveCount > 0; iterationDepth++) {
+                IterationEvent event = new IterationEvent();
+                event.begin();
+                long nodesBefore = statistics.getNodes();
+
+                searchIteration(root, validMoves, validMoveCount, iterationDepth, maximizingPlayer);
+
+                if (isStopped && bestMove != Moves.NO_MOVE) break;
+
+                SearchStatistics.Line[] lines = reduceRootMoves();
+
+                if (lines.length == 0) break;
+
+                bestMove = lines[0].getMove();
+                bestEvaluation = lines[0].getEvaluation();
+                principalVariation = lines[0].getPrincipalVariation();
+                statistics.completeIteration(iterationDepth, lines);
+
+                if (event.shouldCommit()) {
+                    event.depth = iterationDepth;
+                    event.nodes = statistics.getNodes() - nodesBefore;
+                    event.bestMove = Moves.toString(bestMove);
+                    event.evaluation = bestEvaluation;
+                    event.pondering = !notifiesListeners;
+                    event.commit();
+                }
+
+                if (isStopped) break;
+            }
+
+            statistics.finish(bestMove, bestEvaluation, principalVariation);
+        }
+
+        /**
+         * @param root snapshot of the searched position, every thread makes its moves on its own board created from it
+         */
+        private void searchIteration(ChessBoard.Snapshot root, int[] validMoves, int validMoveCount, int iterationDepth, boolean maximizingPlayer) {
+            List<Future<?>> tasks = new ArrayList<>();
+            Arrays.fill(threadLineCounts, 0);
+
+            for (int i = 0; i < NUMBER_OF_THREADS; i++) {
+                int[] startingMoves = getPart(validMoves, validMoveCount, i);
+                int threadIndex = i;
+
+                tasks.add(SEARCH_THREADS.submit(() -> {
+                    startClock();
+                    long allocatedBefore = AllocationProfiler.currentThreadAllocatedBytes();
+                    ChessBoard copiedChessBoard = root.toBoard();
+                    SearchBuffers buffers = SEARCH_BUFFERS.get();
+                    buffers.prepare(this, threadIndex);
+                    if (neuralNetwork != null) copiedChessBoard.setAccumulator(buffers.accumulator);
+                    minimax(copiedChessBoard, buffers, startingMoves, iterationDepth, 0, maximizingPlayer, Integer.MIN_VALUE, Integer.MAX_VALUE);
+                    statistics.countAllocatedBytes(threadIndex, AllocationProfiler.currentThreadAllocatedBytes() - allocatedBefore);
+                    statistics.finishThread(threadIndex);
+                }));
+            }
+
+            for (Future<?> task : tasks) {
+                try {
+                    task.get();
+                } catch (InterruptedException e) {
+                    Logger.getLogger("global").log(Level.SEVERE, "Thread interrupted!", e);
+                    Thread.currentThread().interrupt();
+                    stop();
+                } catch (ExecutionException e) {
+                    Logger.getLogger("global").log(Level.SEVERE, "Search failed!", e.getCause());
+                    stop();
+                }
+            }
+        }
+
+        /**
+         * Keeps the best root moves of a thread in the running iteration, called by the thread after searching each of its root moves.
+         * A move is kept while the thread has fewer than lineCount moves or when it is better than the worst kept one,
+         * its evaluation is then exact because the root window is never narrowed beyond the worst kept move.
+         * @param bound alpha for white to move, beta for black to move
+         * @return root bound for the following moves, the evaluation of the worst kept move once lineCount moves are kept
+         */
+        private int offerRootMove(int move, int evaluation, int bound, SearchBuffers buffers) {
+            int thread = buffers.threadIndex;
+
+            if (threadLineCounts[thread] == lineCount && !isBetter(evaluation, bound)) return bound;
 
-        for(int row = 0; row < 8; row++) {
-            for (int column = 0; column < 8; column++) {
-                ChessBoard.Field field = board.getField(row, column);
+            updatePrincipalVariation(buffers, 0, move);
+            threadLineCounts[thread] = insertLine(threadMoves[thread], threadEvaluations[thread], threadVariations[thread], threadLineCounts[thread],
+                move, evaluation, Arrays.copyOf(buffers.principalVariation[0], buffers.principalVariationLength[0]));
 
-                if (field.getChessPiece().getColor() == color) {
-                    material += field.getChessPiece().getPiece().getValue();
+            return threadLineCounts[thread] == lineCount ? threadEvaluations[thread][lineCount - 1] : bound;
+        }
+
+        /**
+         * Merges the best moves of all threads in thread order,
+         * so that of equally evaluated moves always the one of the lowest thread comes first, whichever thread finished first
+         * @return best moves of the iteration, best first
+         */
+        private SearchStatistics.Line[] reduceRootMoves() {
+            int[] moves = new int[lineCount];
+            int[] evaluations = new int[lineCount];
+            int[][] variations = new int[lineCount][];
+            int count = 0;
+
+            for (int i = 0; i < NUMBER_OF_THREADS; i++) {
+                for (int j = 0; j < threadLineCounts[i]; j++) {
+                    count = insertLine(moves, evaluations, variations, count, threadMoves[i][j], threadEvaluations[i][j], threadVariations[i][j]);
                 }
             }
+
+            SearchStatistics.Line[] lines = new SearchStatistics.Line[count];
+
+            for (int i = 0; i < count; i++) {
+                lines[i] = new SearchStatistics.Line(moves[i], evaluations[i], variations[i]);
+            }
+
+            return lines;
+        }
+
+        /**
+         * Inserts a move after all moves evaluated at least as well, dropping the worst move when all lineCount places are taken
+         * @return new number of moves
+         */
+        private int insertLine(int[] moves, int[] evaluations, int[][] variations, int count, int move, int evaluation, int[] variation) {
+            if (count == lineCount && !isBetter(evaluation, evaluations[count - 1])) return count;
+
+            int index = Math.min(count, lineCount - 1);
+
+            for (; index > 0 && isBetter(evaluation, evaluations[index - 1]); index--) {
+                moves[index] = moves[index - 1];
+                evaluations[index] = evaluations[index - 1];
+                variations[index] = variations[index - 1];
+            }
+
+            moves[index] = move;
+            evaluations[index] = evaluation;
+            variations[index] = variation;
+
+            return Math.min(count + 1, lineCount);
         }
 
-        return material;
+        private boolean isBetter(int evaluation, int otherEvaluation) {
+            return position.getColorToMove() == WHITE ? evaluation > otherEvaluation : evaluation < otherEvaluation;
+        }
+
+        /**
+         * Starts the move time when the first search thread starts working on the search,
+         * so that waiting for threads busy with other searches is not taken from it
+         */
+        private void startClock() {
+            if (moveTime != 0 && deadline == Long.MAX_VALUE) limitTime(moveTime);
+        }
+
+        /**
+         * Stops the search when its time is up. In the first iteration the calling thread has to finish one of its root moves before,
+         * so that the search ends with at least one move, the best of the root moves searched in the incomplete iteration.
+         */
+        private void checkTime(SearchBuffers buffers) {
+            if (System.nanoTime() > deadline && (bestMove != Moves.NO_MOVE || threadLineCounts[buffers.threadIndex] > 0)) stop();
+        }
+
+        /**
+         * Ends the search the given time from now, also used to limit a running ponder search after a ponder hit
+         * @param moveTime time limit in milliseconds
+         */
+        private void limitTime(long moveTime) {
+            deadline = System.nanoTime() + moveTime * 1_000_000;
+        }
+
+        private void stop() {
+            isStopped = true;
+        }
+    }
+
+    /**
+     * Move, guessed value and principal variation buffers for every ply, allocated once per search thread
+     */
+    private static class SearchBuffers {
+        private Search search;
+        private int threadIndex;
+        private int nodes;
+        private TranspositionTable transpositionTable;
+        private NnueAccumulator accumulator;
+        private final int[][] moves = new int[MAX_PLY][ChessBoard.MAX_MOVES];
+        private final int[][] scores = new int[MAX_PLY][ChessBoard.MAX_MOVES];
+        private final int[][] principalVariation = new int[MAX_PLY][MAX_PLY];
+        private final int[] principalVariationLength = new int[MAX_PLY];
+
+        private void prepare(Search search, int threadIndex) {
+            this.search = search;
+            this.threadIndex = threadIndex;
+            transpositionTable = search.transpositionTables[threadIndex];
+
+            if (search.neuralNetwork != null && (accumulator == null || accumulator.getNetwork() != search.neuralNetwork)) {
+                accumulator = new NnueAccumulator(search.neuralNetwork);
+            }
+        }
     }
 }
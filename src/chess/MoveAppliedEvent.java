@@ -0,0 +1,25 @@
+package chess;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning application of a move to the board and the user interface
+ */
+@Name("chess.MoveApplied")
+@Label("Move Applied")
+@Category({"Chess", "User Interface"})
+@Description("Move shown on the board, including captures, castling and promotion handling")
+public class MoveAppliedEvent extends Event {
+    @Label("Move")
+    String move;
+
+    @Label("Color")
+    String color;
+
+    @Label("Computer Move")
+    boolean computerMove;
+}
@@ -0,0 +1,265 @@
+package chess;
+
+import java.util.Locale;
+
+/**
+ * Moves encoded as plain ints so that the search does not allocate an object per generated move.
+ * Bits 0-5 hold the starting square, bits 6-11 the target square, bits 12-14 the special move and bits 15-17 the promotion piece.
+ * Squares are numbered row * 8 + column with row 0 being the black side of the board.
+ */
+public class Moves {
+    public static final int NO_MOVE = 0;
+    private static final int SQUARE_MASK = 0x3F;
+    private static final int TYPE_MASK = 0x7;
+    private static final int TO_SHIFT = 6;
+    private static final int SPECIAL_MOVE_SHIFT = 12;
+    private static final int PROMOTION_SHIFT = 15;
+    private static final ChessBoard.ChessPiece.SpecialMove[] SPECIAL_MOVES = ChessBoard.ChessPiece.SpecialMove.values();
+    private static final ChessBoard.ChessPiece.Piece[] PIECES = ChessBoard.ChessPiece.Piece.values();
+
+    private Moves() {
+    }
+
+    public static int encode(int from, int to, ChessBoard.ChessPiece.SpecialMove specialMove) {
+        return encode(from, to, specialMove, ChessBoard.ChessPiece.Piece.NONE);
+    }
+
+    public static int encode(int from, int to, ChessBoard.ChessPiece.SpecialMove specialMove, ChessBoard.ChessPiece.Piece promotion) {
+        return from | to << TO_SHIFT | specialMove.ordinal() << SPECIAL_MOVE_SHIFT | promotion.ordinal() << PROMOTION_SHIFT;
+    }
+
+    /**
+     * Encodes a move object of the user interface, promotions are encoded as promotions to a queen
+     * @param move move to encode
+     * @return encoded move
+     */
+    public static int encode(ChessBoard.Field.Move move) {
+        int from = square(move.getFrom().getPosition().getRow(), move.getFrom().getPosition().getColumn());
+        int to = square(move.getPosition().getRow(), move.getPosition().getColumn());
+        ChessBoard.ChessPiece.Piece promotion = move.getSpecialMove() == ChessBoard.ChessPiece.SpecialMove.PROMOTION ? ChessBoard.ChessPiece.Piece.QUEEN : ChessBoard.ChessPiece.Piece.NONE;
+
+        return encode(from, to, move.getSpecialMove(), promotion);
+    }
+
+    public static int square(int row, int column) {
+        return row * 8 + column;
+    }
+
+    public static int getRow(int square) {
+        return square >> 3;
+    }
+
+    public static int getColumn(int square) {
+        return square & 7;
+    }
+
+    public static int getFrom(int move) {
+        return move & SQUARE_MASK;
+    }
+
+    public static int getTo(int move) {
+        return move >> TO_SHIFT & SQUARE_MASK;
+    }
+
+    public static ChessBoard.ChessPiece.SpecialMove getSpecialMove(int move) {
+        return SPECIAL_MOVES[move >> SPECIAL_MOVE_SHIFT & TYPE_MASK];
+    }
+
+    public static ChessBoard.ChessPiece.Piece getPromotion(int move) {
+        return PIECES[move >> PROMOTION_SHIFT & TYPE_MASK];
+    }
+
+    /**
+     * Coordinate notation of the move, e.g. e2e4 or e7e8q
+     * @param move encoded move
+     * @return move in coordinate notation
+     */
+    public static String toString(int move) {
+        String notation = squareToString(getFrom(move)) + squareToString(getTo(move));
+
+        if (getSpecialMove(move) == ChessBoard.ChessPiece.SpecialMove.PROMOTION) {
+            notation += getPromotion(move).getSymbol();
+        }
+
+        return notation;
+    }
+
+    /**
+     * Finds the valid move of the side to move written in coordinate notation, promotions without a piece letter promote to a queen
+     * @param board position the move is played in
+     * @param notation move in coordinate notation, e.g. e2e4 or e7e8q
+     * @return encoded move or NO_MOVE if no such move is valid
+     */
+    public static int parse(ChessBoard board, String notation) {
+        int[] validMoves = new int[ChessBoard.MAX_MOVES];
+        int validMoveCount = board.generateMoves(validMoves);
+        String move = notation.trim().toLowerCase(Locale.ROOT);
+
+        for (int i = 0; i < validMoveCount; i++) {
+            String validMove = toString(validMoves[i]);
+
+            if (validMove.equals(move) || validMove.equals(move + 'q')) return validMoves[i];
+        }
+
+        return NO_MOVE;
+    }
+
+    /**
+     * Standard algebraic notation of a valid move, e.g. Nbd7, exd6, e8=Q+ or O-O
+     * @param board position before the move, left unchanged
+     * @param move encoded move
+     * @return move in standard algebraic notation
+     */
+    public static String toSan(ChessBoard board, int move) {
+        int from = getFrom(move);
+        int to = getTo(move);
+        ChessBoard.ChessPiece.SpecialMove specialMove = getSpecialMove(move);
+        ChessBoard.ChessPiece.Piece piece = board.getField(getRow(from), getColumn(from)).getChessPiece().getPiece();
+        StringBuilder san = new StringBuilder();
+
+        if (specialMove == ChessBoard.ChessPiece.SpecialMove.CASTLE) {
+            san.append(getColumn(to) == 6 ? "O-O" : "O-O-O");
+        } else {
+            boolean isCapture = specialMove == ChessBoard.ChessPiece.SpecialMove.EN_PASSANT
+                || board.getField(getRow(to), getColumn(to)).getChessPiece().getColor() != ChessBoard.ChessPiece.Color.NONE;
+
+            if (piece != ChessBoard.ChessPiece.Piece.PAWN) {
+                san.append(Character.toUpperCase(piece.getSymbol()));
+                appendDisambiguation(board, move, piece, san);
+            } else if (isCapture) {
+                san.append((char) ('a' + getColumn(from)));
+            }
+
+            if (isCapture) san.append('x');
+
+            san.append(squareToString(to));
+
+            if (specialMove == ChessBoard.ChessPiece.SpecialMove.PROMOTION) {
+                san.append('=').append(Character.toUpperCase(getPromotion(move).getSymbol()));
+            }
+        }
+
+        board.makeMove(move);
+
+        if (board.isInCheck()) san.append(board.cannotMove(board.getColorToMove()) ? '#' : '+');
+
+        board.unmakeMove(move);
+
+        return san.toString();
+    }
+
+    /**
+     * Adds file, rank or both of the starting square when another piece of the same type can move to the same square
+     */
+    private static void appendDisambiguation(ChessBoard board, int move, ChessBoard.ChessPiece.Piece piece, StringBuilder san) {
+        int[] validMoves = new int[ChessBoard.MAX_MOVES];
+        int validMoveCount = board.generateMoves(validMoves);
+        int from = getFrom(move);
+        boolean isAmbiguous = false;
+        boolean sharesColumn = false;
+        boolean sharesRow = false;
+
+        for (int i = 0; i < validMoveCount; i++) {
+            int otherFrom = getFrom(validMoves[i]);
+
+            if (getTo(validMoves[i]) != getTo(move) || otherFrom == from) continue;
+            if (board.getField(getRow(otherFrom), getColumn(otherFrom)).getChessPiece().getPiece() != piece) continue;
+
+            isAmbiguous = true;
+            sharesColumn |= getColumn(otherFrom) == getColumn(from);
+            sharesRow |= getRow(otherFrom) == getRow(from);
+        }
+
+        if (!isAmbiguous) return;
+
+        if (!sharesColumn) {
+            san.append((char) ('a' + getColumn(from)));
+        } else if (!sharesRow) {
+            san.append((char) ('8' - getRow(from)));
+        } else {
+            san.append(squareToString(from));
+        }
+    }
+
+    /**
+     * Finds the valid move written in standard algebraic notation, castling may also be written with zeros
+     * @param board position the move is played in
+     * @param san move in standard algebraic notation, check and annotation symbols are ignored
+     * @return encoded move or NO_MOVE if no such move is valid
+     */
+    public static int parseSan(ChessBoard board, String san) {
+        int end = san.length();
+
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) end--;
+
+        String text = san.substring(0, end).replace('0', 'O');
+        int[] validMoves = new int[ChessBoard.MAX_MOVES];
+        int validMoveCount = board.generateMoves(validMoves);
+
+        if (text.equals("O-O") || text.equals("O-O-O")) {
+            int column = text.equals("O-O") ? 6 : 2;
+
+            for (int i = 0; i < validMoveCount; i++) {
+                if (getSpecialMove(validMoves[i]) == ChessBoard.ChessPiece.SpecialMove.CASTLE && getColumn(getTo(validMoves[i])) == column) return validMoves[i];
+            }
+
+            return NO_MOVE;
+        }
+
+        ChessBoard.ChessPiece.Piece piece = ChessBoard.ChessPiece.Piece.PAWN;
+        ChessBoard.ChessPiece.Piece promotion = ChessBoard.ChessPiece.Piece.NONE;
+        int start = 0;
+
+        if (text.length() > 0 && "KQRBN".indexOf(text.charAt(0)) >= 0) {
+            piece = ChessBoard.ChessPiece.Piece.ofSymbol(text.charAt(0));
+            start = 1;
+        }
+
+        int promotionIndex = text.indexOf('=');
+
+        if (promotionIndex >= 0 && promotionIndex + 1 < text.length()) {
+            promotion = ChessBoard.ChessPiece.Piece.ofSymbol(text.charAt(promotionIndex + 1));
+            text = text.substring(0, promotionIndex);
+        } else if (piece == ChessBoard.ChessPiece.Piece.PAWN && text.length() > 2 && "QRBN".indexOf(text.charAt(text.length() - 1)) >= 0) {
+            promotion = ChessBoard.ChessPiece.Piece.ofSymbol(text.charAt(text.length() - 1));
+            text = text.substring(0, text.length() - 1);
+        }
+
+        if (text.length() - start < 2) return NO_MOVE;
+
+        int targetColumn = text.charAt(text.length() - 2) - 'a';
+        int targetRow = '8' - text.charAt(text.length() - 1);
+
+        if (targetColumn < 0 || targetColumn > 7 || targetRow < 0 || targetRow > 7) return NO_MOVE;
+
+        int to = square(targetRow, targetColumn);
+        int fromColumn = -1;
+        int fromRow = -1;
+
+        for (char symbol : text.substring(start, text.length() - 2).toCharArray()) {
+            if (symbol >= 'a' && symbol <= 'h') fromColumn = symbol - 'a';
+            else if (symbol >= '1' && symbol <= '8') fromRow = '8' - symbol;
+        }
+
+        for (int i = 0; i < validMoveCount; i++) {
+            int move = validMoves[i];
+            int from = getFrom(move);
+
+            if (getTo(move) != to || getSpecialMove(move) == ChessBoard.ChessPiece.SpecialMove.CASTLE) continue;
+            if (fromColumn >= 0 && getColumn(from) != fromColumn || fromRow >= 0 && getRow(from) != fromRow) continue;
+            if (board.getField(getRow(from), getColumn(from)).getChessPiece().getPiece() != piece) continue;
+
+            if (getSpecialMove(move) == ChessBoard.ChessPiece.SpecialMove.PROMOTION) {
+                return encode(from, to, ChessBoard.ChessPiece.SpecialMove.PROMOTION, promotion == ChessBoard.ChessPiece.Piece.NONE ? ChessBoard.ChessPiece.Piece.QUEEN : promotion);
+            }
+
+            return move;
+        }
+
+        return NO_MOVE;
+    }
+
+    private static String squareToString(int square) {
+        return "" + (char) ('a' + getColumn(square)) + (char) ('8' - getRow(square));
+    }
+}
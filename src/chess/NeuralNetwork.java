@@ -0,0 +1,182 @@
+package chess;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Small efficiently updatable neural network evaluating a position from the side to move perspective.
+ * Input features are HalfKP-like: for each side (perspective) one feature per non-king piece, its square and the square
+ * of the perspective's own king, with squares seen from that side (a1 = 0 for white, a8 = 0 for black).
+ * Both perspectives share the feature weights, their accumulators go through a clipped ReLU into one output neuron.
+ * Weights are quantised to 16 bits, the accumulators by {@link #ACTIVATION_LIMIT} and the output weights by
+ * {@link #OUTPUT_QUANTISATION}.
+ * <p>
+ * File layout, big-endian: magic, version, hidden size, feature weights [feature][hidden], feature biases [hidden],
+ * output weights [2 * hidden] (side to move first), output bias (int, quantised by both factors).
+ */
+public class NeuralNetwork {
+    public static final int FEATURES = 64 * 10 * 64;
+    public static final int ACTIVATION_LIMIT = 255;
+    public static final int OUTPUT_QUANTISATION = 64;
+    private static final int OUTPUT_SCALE = 400;
+    private static final int MAGIC = 0x4E4E5545;
+    private static final int VERSION = 1;
+    private static final String DEFAULT_FILE = "Networks/Default.nnue";
+    private static NeuralNetwork defaultNetwork;
+    private static boolean isDefaultLoaded;
+
+    final int hiddenSize;
+    final short[] featureWeights;
+    final short[] featureBiases;
+    final short[] outputWeights;
+    final int outputBias;
+
+    NeuralNetwork(int hiddenSize, short[] featureWeights, short[] featureBiases, short[] outputWeights, int outputBias) {
+        this.hiddenSize = hiddenSize;
+        this.featureWeights = featureWeights;
+        this.featureBiases = featureBiases;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+    }
+
+    /**
+     * Network from the default file, loaded on first use and shared by all adversaries
+     * @return network or null if the file does not exist or can not be read
+     */
+    public static synchronized NeuralNetwork getDefault() {
+        if (!isDefaultLoaded) {
+            isDefaultLoaded = true;
+
+            if (Files.exists(Path.of(DEFAULT_FILE))) {
+                try {
+                    defaultNetwork = load(Path.of(DEFAULT_FILE));
+                } catch (IOException e) {
+                    Logger.getLogger("global").log(Level.WARNING, DEFAULT_FILE + " could not be read!", e);
+                }
+            }
+        }
+
+        return defaultNetwork;
+    }
+
+    public static NeuralNetwork load(Path path) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) throw new IOException("Not a network file: " + path);
+
+            int hiddenSize = input.readInt();
+
+            if (hiddenSize <= 0 || hiddenSize > 4096) throw new IOException("Invalid hidden size " + hiddenSize);
+
+            short[] featureWeights = readShorts(input, FEATURES * hiddenSize);
+            short[] featureBiases = readShorts(input, hiddenSize);
+            short[] outputWeights = readShorts(input, 2 * hiddenSize);
+
+            long largestSum = 0;
+
+            for (short weight : outputWeights) {
+                largestSum += (long) ACTIVATION_LIMIT * Math.abs(weight);
+            }
+
+            if (largestSum > Integer.MAX_VALUE) throw new IOException("Output weights too large in " + path);
+
+            return new NeuralNetwork(hiddenSize, featureWeights, featureBiases, outputWeights, input.readInt());
+        }
+    }
+
+    public void save(Path path) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(hiddenSize);
+            writeShorts(output, featureWeights);
+            writeShorts(output, featureBiases);
+            writeShorts(output, outputWeights);
+            output.writeInt(outputBias);
+        }
+    }
+
+    private static short[] readShorts(DataInputStream input, int count) throws IOException {
+        short[] values = new short[count];
+
+        for (int i = 0; i < count; i++) {
+            values[i] = input.readShort();
+        }
+
+        return values;
+    }
+
+    private static void writeShorts(DataOutputStream output, short[] values) throws IOException {
+        for (short value : values) {
+            output.writeShort(value);
+        }
+    }
+
+    /**
+     * @param perspective side whose king and orientation are used
+     * @param kingSquare board square (row * 8 + column) of the perspective's king
+     * @param color color of the piece
+     * @param piece piece other than the king
+     * @param square board square of the piece
+     * @return index of the feature
+     */
+    static int featureIndex(ChessBoard.ChessPiece.Color perspective, int kingSquare, ChessBoard.ChessPiece.Color color, ChessBoard.ChessPiece.Piece piece, int square) {
+        int pieceIndex = (piece.ordinal() - 1) * 2 + (color == perspective ? 0 : 1);
+
+        return (orient(perspective, kingSquare) * 10 + pieceIndex) * 64 + orient(perspective, square);
+    }
+
+    private static int orient(ChessBoard.ChessPiece.Color perspective, int square) {
+        return perspective == ChessBoard.ChessPiece.Color.WHITE ? square ^ 56 : square;
+    }
+
+    /**
+     * @param us accumulator of the side to move
+     * @param them accumulator of the other side
+     * @return evaluation in centipawns from the side to move perspective
+     */
+    int evaluate(short[] us, short[] them) {
+        long sum = (long) activatedDot(us, outputWeights, 0, hiddenSize) + activatedDot(them, outputWeights, hiddenSize, hiddenSize) + outputBias;
+
+        return (int) (sum * OUTPUT_SCALE / (ACTIVATION_LIMIT * OUTPUT_QUANTISATION));
+    }
+
+    /**
+     * Adds the weights of a feature to an accumulator, kept as a plain counted loop so that it is compiled to SIMD instructions
+     */
+    void addFeature(short[] accumulator, int feature) {
+        int offset = feature * hiddenSize;
+
+        for (int i = 0; i < hiddenSize; i++) {
+            accumulator[i] += featureWeights[offset + i];
+        }
+    }
+
+    void subtractFeature(short[] accumulator, int feature) {
+        int offset = feature * hiddenSize;
+
+        for (int i = 0; i < hiddenSize; i++) {
+            accumulator[i] -= featureWeights[offset + i];
+        }
+    }
+
+    /**
+     * Sums in int so that the loop is vectorised, {@link #load} rejects networks whose sums could overflow
+     */
+    private static int activatedDot(short[] accumulator, short[] weights, int offset, int length) {
+        int sum = 0;
+
+        for (int i = 0; i < length; i++) {
+            int activation = Math.min(Math.max(accumulator[i], 0), ACTIVATION_LIMIT);
+            sum += activation * weights[offset + i];
+        }
+
+        return sum;
+    }
+}
@@ -0,0 +1,171 @@
+package chess;
+
+import java.util.Arrays;
+
+import static chess.ChessBoard.ChessPiece.Color.BLACK;
+import static chess.ChessBoard.ChessPiece.Color.WHITE;
+
+/**
+ * Accumulators of a {@link NeuralNetwork} for every ply of a board's move history.
+ * Making a move only records the pieces it removed and added, the accumulator of a ply is computed when it is evaluated
+ * from the nearest computed ply before it, so positions that are only visited to check move validity cost nothing.
+ * A move of a perspective's own king changes all its features, that perspective is then computed from the whole board.
+ */
+public class NnueAccumulator {
+    private static final int INITIAL_CAPACITY = 32;
+    private static final int MAX_CHANGES = 4;
+    private static final int ADDED = 1 << 16;
+    private static final ChessBoard.ChessPiece.Color[] COLORS = ChessBoard.ChessPiece.Color.values();
+    private static final ChessBoard.ChessPiece.Piece[] PIECES = ChessBoard.ChessPiece.Piece.values();
+
+    private final NeuralNetwork network;
+    private short[][][] values;
+    private boolean[][] isComputed;
+    private boolean[][] isKingMoved;
+    private int[][] changes;
+    private int[] changeCounts;
+    private int ply;
+
+    public NnueAccumulator(NeuralNetwork network) {
+        this.network = network;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    public NeuralNetwork getNetwork() {
+        return network;
+    }
+
+    private void allocate(int capacity) {
+        int previousCapacity = values == null ? 0 : values.length;
+
+        values = values == null ? new short[capacity][][] : Arrays.copyOf(values, capacity);
+        isComputed = isComputed == null ? new boolean[capacity][] : Arrays.copyOf(isComputed, capacity);
+        isKingMoved = isKingMoved == null ? new boolean[capacity][] : Arrays.copyOf(isKingMoved, capacity);
+        changes = changes == null ? new int[capacity][] : Arrays.copyOf(changes, capacity);
+        changeCounts = changeCounts == null ? new int[capacity] : Arrays.copyOf(changeCounts, capacity);
+
+        for (int i = previousCapacity; i < capacity; i++) {
+            values[i] = new short[2][network.hiddenSize];
+            isComputed[i] = new boolean[2];
+            isKingMoved[i] = new boolean[2];
+            changes[i] = new int[MAX_CHANGES];
+        }
+    }
+
+    /**
+     * Forgets all plies and computes the current position of the board, which all later plies are updated from
+     */
+    void reset(ChessBoard board) {
+        ply = 0;
+        changeCounts[0] = 0;
+        refresh(board, WHITE);
+        refresh(board, BLACK);
+    }
+
+    /**
+     * Marks the current position as changed outside of made moves
+     */
+    void invalidate() {
+        changeCounts[ply] = 0;
+        Arrays.fill(isComputed[ply], false);
+        Arrays.fill(isKingMoved[ply], true);
+    }
+
+    void push() {
+        if (++ply == values.length) allocate(2 * ply);
+
+        changeCounts[ply] = 0;
+        Arrays.fill(isComputed[ply], false);
+        Arrays.fill(isKingMoved[ply], false);
+    }
+
+    void pop() {
+        ply--;
+    }
+
+    /**
+     * @param code piece code as in {@link ChessBoard#getPieceCodes}, 0 is ignored
+     */
+    void removePiece(int code, int square) {
+        recordChange(code, square, 0);
+    }
+
+    void addPiece(int code, int square) {
+        recordChange(code, square, ADDED);
+    }
+
+    private void recordChange(int code, int square, int added) {
+        if (code == 0) return;
+
+        if (PIECES[code & 7] == ChessBoard.ChessPiece.Piece.KING) {
+            isKingMoved[ply][(code >> 3) - 1] = true;
+        } else {
+            changes[ply][changeCounts[ply]++] = added | code << 8 | square;
+        }
+    }
+
+    /**
+     * @param board board whose current position is the last pushed ply
+     * @return evaluation from white perspective
+     */
+    public int evaluate(ChessBoard board) {
+        update(board, WHITE);
+        update(board, BLACK);
+
+        short[] white = values[ply][0];
+        short[] black = values[ply][1];
+
+        return board.getColorToMove() == WHITE ? network.evaluate(white, black) : -network.evaluate(black, white);
+    }
+
+    private void update(ChessBoard board, ChessBoard.ChessPiece.Color perspective) {
+        int side = perspective.ordinal() - 1;
+        int computed = ply;
+
+        while (!isComputed[computed][side]) {
+            if (isKingMoved[computed][side] || computed == 0) {
+                refresh(board, perspective);
+                return;
+            }
+
+            computed--;
+        }
+
+        int kingSquare = board.getKingSquare(perspective);
+
+        for (int i = computed + 1; i <= ply; i++) {
+            short[] accumulator = values[i][side];
+            System.arraycopy(values[i - 1][side], 0, accumulator, 0, accumulator.length);
+
+            for (int j = 0; j < changeCounts[i]; j++) {
+                int change = changes[i][j];
+                int feature = NeuralNetwork.featureIndex(perspective, kingSquare, COLORS[change >>> 11 & 0x3],
+                    PIECES[change >>> 8 & 0x7], change & 0xFF);
+
+                if ((change & ADDED) != 0) network.addFeature(accumulator, feature);
+                else network.subtractFeature(accumulator, feature);
+            }
+
+            isComputed[i][side] = true;
+        }
+    }
+
+    private void refresh(ChessBoard board, ChessBoard.ChessPiece.Color perspective) {
+        int side = perspective.ordinal() - 1;
+        short[] accumulator = values[ply][side];
+        int kingSquare = board.getKingSquare(perspective);
+        byte[] pieceCodes = board.getPieceCodes();
+
+        System.arraycopy(network.featureBiases, 0, accumulator, 0, accumulator.length);
+
+        for (int square = 0; square < 64; square++) {
+            int code = pieceCodes[square];
+
+            if (code != 0 && PIECES[code & 7] != ChessBoard.ChessPiece.Piece.KING) {
+                network.addFeature(accumulator, NeuralNetwork.featureIndex(perspective, kingSquare, COLORS[code >> 3], PIECES[code & 7], square));
+            }
+        }
+
+        isComputed[ply][side] = true;
+    }
+}
@@ -0,0 +1,40 @@
+package chess;
+
+/**
+ * Cache of pawn structure evaluations keyed by the pawn hash, shared by all search threads of an adversary or by several adversaries.
+ * Entries are stored like in the {@link TranspositionTable}, the key xor-ed with the data followed by the data,
+ * so torn entries are detected instead of returning a wrong evaluation.
+ * An empty entry matches the key 0 of a board without pawns, whose evaluation is 0 as well.
+ */
+public class PawnHashTable {
+    public static final int DEFAULT_ENTRIES = 1 << 14;
+
+    private final long[] entries;
+
+    /**
+     * @param entryCount number of entries, rounded down to a power of two
+     */
+    public PawnHashTable(int entryCount) {
+        entries = new long[2 * Integer.highestOneBit(Math.max(1, entryCount))];
+    }
+
+    /**
+     * Pawn structure evaluation of the board, computed and stored when it is not in the table
+     * @param board position to evaluate
+     * @return evaluation from white perspective
+     */
+    public int evaluate(ChessBoard board) {
+        long key = board.getPawnHash();
+        int index = 2 * (int) (key & ((entries.length >> 1) - 1));
+        long data = entries[index + 1];
+
+        if ((entries[index] ^ data) == key) return (int) data;
+
+        int evaluation = PawnStructure.evaluate(board.getPawns(ChessBoard.ChessPiece.Color.WHITE), board.getPawns(ChessBoard.ChessPiece.Color.BLACK));
+
+        entries[index] = key ^ evaluation;
+        entries[index + 1] = evaluation;
+
+        return evaluation;
+    }
+}
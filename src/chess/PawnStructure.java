@@ -0,0 +1,103 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * Pawn structure terms computed from pawn bitboards, where bit row * 8 + column is set for every pawn
+ * and row 0 is black's back rank
+ */
+public class PawnStructure {
+    /**
+     * Bonus of a passed pawn by its row counted from the own back rank
+     */
+    private static final int[] PASSED_PAWN_BONUS = {0, 5, 10, 20, 35, 60, 100, 0};
+    private static final int DOUBLED_PAWN_PENALTY = 15;
+    private static final int ISOLATED_PAWN_PENALTY = 15;
+    private static final int BACKWARD_PAWN_PENALTY = 10;
+    private static final long FIRST_COLUMN = 0x0101010101010101L;
+    private static final long[] COLUMNS = new long[8];
+    private static final long[] ADJACENT_COLUMNS = new long[8];
+
+    static {
+        for (int column = 0; column < 8; column++) {
+            COLUMNS[column] = FIRST_COLUMN << column;
+        }
+
+        for (int column = 0; column < 8; column++) {
+            ADJACENT_COLUMNS[column] = (column > 0 ? COLUMNS[column - 1] : 0) | (column < 7 ? COLUMNS[column + 1] : 0);
+        }
+    }
+
+    /**
+     * @return hash of all terms, changes whenever a term is changed
+     */
+    static int hashTerms() {
+        return ((Arrays.hashCode(PASSED_PAWN_BONUS) * 31 + DOUBLED_PAWN_PENALTY) * 31 + ISOLATED_PAWN_PENALTY) * 31 + BACKWARD_PAWN_PENALTY;
+    }
+
+    /**
+     * @return pawn structure evaluation from white perspective
+     */
+    public static int evaluate(long whitePawns, long blackPawns) {
+        return evaluateSide(whitePawns, blackPawns, true) - evaluateSide(blackPawns, whitePawns, false);
+    }
+
+    private static int evaluateSide(long pawns, long enemyPawns, boolean isWhite) {
+        int evaluation = 0;
+
+        for (int column = 0; column < 8; column++) {
+            int count = Long.bitCount(pawns & COLUMNS[column]);
+
+            if (count > 1) evaluation -= (count - 1) * DOUBLED_PAWN_PENALTY;
+        }
+
+        for (long remaining = pawns; remaining != 0; remaining &= remaining - 1) {
+            int square = Long.numberOfTrailingZeros(remaining);
+            int row = square / 8;
+            int column = square % 8;
+            long ahead = isWhite ? rowsBefore(row) : rowsAfter(row);
+
+            if ((enemyPawns & ahead & (COLUMNS[column] | ADJACENT_COLUMNS[column])) == 0) {
+                evaluation += PASSED_PAWN_BONUS[isWhite ? 7 - row : row];
+            }
+
+            if ((pawns & ADJACENT_COLUMNS[column]) == 0) {
+                evaluation -= ISOLATED_PAWN_PENALTY;
+            } else if (isBackward(pawns, enemyPawns, row, column, isWhite)) {
+                evaluation -= BACKWARD_PAWN_PENALTY;
+            }
+        }
+
+        return evaluation;
+    }
+
+    /**
+     * A pawn is backward when no own pawn on an adjacent column is level with or behind it
+     * and the square in front of it is attacked by an enemy pawn
+     */
+    private static boolean isBackward(long pawns, long enemyPawns, int row, int column, boolean isWhite) {
+        long levelOrBehind = isWhite ? rowsAfter(row - 1) : rowsBefore(row + 1);
+
+        if ((pawns & ADJACENT_COLUMNS[column] & levelOrBehind) != 0) return false;
+
+        int attackerRow = isWhite ? row - 2 : row + 2;
+
+        if (attackerRow < 0 || attackerRow > 7) return false;
+
+        return (enemyPawns & ADJACENT_COLUMNS[column] & (0xFFL << (attackerRow * 8))) != 0;
+    }
+
+    /**
+     * @return mask of all rows with a lower number than the row
+     */
+    private static long rowsBefore(int row) {
+        return row <= 0 ? 0 : row >= 8 ? -1L : (1L << (row * 8)) - 1;
+    }
+
+    /**
+     * @return mask of all rows with a higher number than the row
+     */
+    private static long rowsAfter(int row) {
+        return ~rowsBefore(row + 1);
+    }
+}
@@ -0,0 +1,107 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Game read by {@link PgnReader}: tags, main line moves in standard algebraic notation and the result
+ */
+public class PgnGame {
+    public static final String UNKNOWN_RESULT = "*";
+
+    private final Map<String, String> tags;
+    private final List<String> moves;
+    private final List<String> comments;
+    private final List<String> variations;
+    private String result;
+
+    PgnGame() {
+        tags = new LinkedHashMap<>();
+        moves = new ArrayList<>();
+        comments = new ArrayList<>();
+        variations = new ArrayList<>();
+        result = UNKNOWN_RESULT;
+    }
+
+    public Map<String, String> getTags() {
+        return Collections.unmodifiableMap(tags);
+    }
+
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    public List<String> getMoves() {
+        return Collections.unmodifiableList(moves);
+    }
+
+    /**
+     * @return comments of the game in order, empty unless the reader keeps comments
+     */
+    public List<String> getComments() {
+        return Collections.unmodifiableList(comments);
+    }
+
+    /**
+     * @return text of the variations without the outer parentheses, empty unless the reader keeps variations
+     */
+    public List<String> getVariations() {
+        return Collections.unmodifiableList(variations);
+    }
+
+    public String getResult() {
+        return result;
+    }
+
+    /**
+     * @return position set up by the FEN tag or the starting position
+     */
+    public ChessBoard createStartingBoard() {
+        String fen = tags.get("FEN");
+
+        return fen == null ? ChessBoard.startingPosition() : ChessBoard.fromFen(fen);
+    }
+
+    /**
+     * Plays the main line on the board
+     * @param board position the game starts from
+     * @return played moves encoded by {@link Moves}
+     * @throws IllegalArgumentException if a move is not valid, the board is left after the last valid move
+     */
+    public int[] replay(ChessBoard board) {
+        int[] encodedMoves = new int[moves.size()];
+
+        for (int i = 0; i < encodedMoves.length; i++) {
+            encodedMoves[i] = Moves.parseSan(board, moves.get(i));
+
+            if (encodedMoves[i] == Moves.NO_MOVE) throw new IllegalArgumentException("Invalid move " + moves.get(i) + "!");
+
+            board.makeMove(encodedMoves[i]);
+        }
+
+        return encodedMoves;
+    }
+
+    void addTag(String name, String value) {
+        tags.put(name, value);
+    }
+
+    void addMove(String move) {
+        moves.add(move);
+    }
+
+    void addComment(String comment) {
+        comments.add(comment);
+    }
+
+    void addVariation(String variation) {
+        variations.add(variation);
+    }
+
+    void setResult(String result) {
+        this.result = result;
+    }
+}
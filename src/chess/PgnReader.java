@@ -0,0 +1,245 @@
+package chess;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Streaming reader of PGN files returning one game at a time.
+ * Characters are read in large blocks into a single buffer and tokens are collected in a reused builder,
+ * so only the strings of tags and moves are allocated. Comments and variations are skipped unless they are kept.
+ */
+public class PgnReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int END = -1;
+
+    private final Reader reader;
+    private final boolean keepsComments;
+    private final boolean keepsVariations;
+    private final char[] buffer;
+    private final StringBuilder token;
+    private int position;
+    private int limit;
+    private boolean isLineStart;
+
+    public PgnReader(Reader reader) {
+        this(reader, false, false);
+    }
+
+    public PgnReader(Reader reader, boolean keepsComments, boolean keepsVariations) {
+        this.reader = reader;
+        this.keepsComments = keepsComments;
+        this.keepsVariations = keepsVariations;
+        buffer = new char[BUFFER_SIZE];
+        token = new StringBuilder();
+        isLineStart = true;
+    }
+
+    public static PgnReader open(Path path) throws IOException {
+        return new PgnReader(new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return next game or null at the end of the input, a game missing its result at the end of the input has the unknown result
+     */
+    public PgnGame readGame() throws IOException {
+        PgnGame game = null;
+
+        while (true) {
+            int character = skipWhitespace();
+
+            if (character == END) return game;
+
+            if (character == '%' && isLineStart) {
+                skipLine();
+                continue;
+            }
+
+            //Tags after moves belong to the next game
+            if (character == '[' && game != null && !game.getMoves().isEmpty()) return game;
+
+            if (game == null) game = new PgnGame();
+
+            switch (character) {
+                case '[':
+                    position++;
+                    readTag(game);
+                    break;
+                case '{':
+                    position++;
+                    readUntil('}');
+                    if (keepsComments) game.addComment(token.toString().trim());
+                    break;
+                case ';':
+                    position++;
+                    skipLine();
+                    if (keepsComments) game.addComment(token.toString().trim());
+                    break;
+                case '(':
+                    position++;
+                    readVariation();
+                    if (keepsVariations) game.addVariation(token.toString().trim());
+                    break;
+                case '$':
+                    position++;
+                    readSymbol();
+                    break;
+                default:
+                    readSymbol();
+
+                    if (isResult()) {
+                        game.setResult(token.toString());
+                        return game;
+                    }
+
+                    addMove(game);
+            }
+        }
+    }
+
+    private void readTag(PgnGame game) throws IOException {
+        skipWhitespace();
+        readSymbol();
+        String name = token.toString();
+        token.setLength(0);
+
+        int character = skipWhitespace();
+
+        if (character == '"') {
+            position++;
+
+            for (character = read(); character != END && character != '"'; character = read()) {
+                if (character == '\\') character = read();
+                if (character != END) token.append((char) character);
+            }
+        }
+
+        String value = token.toString();
+
+        readUntil(']');
+        game.addTag(name, value);
+    }
+
+    /**
+     * Skips a possibly nested variation, keeping its text in the token
+     */
+    private void readVariation() throws IOException {
+        token.setLength(0);
+        int depth = 1;
+
+        for (int character = read(); character != END; character = read()) {
+            if (character == '{') {
+                token.append('{');
+                for (character = read(); character != END && character != '}'; character = read()) token.append((char) character);
+                if (character == END) return;
+            } else if (character == '(') {
+                depth++;
+            } else if (character == ')' && --depth == 0) {
+                return;
+            }
+
+            token.append((char) character);
+        }
+    }
+
+    /**
+     * Adds the move in the token without the move number it may start with, e.g. 12.e4 or 12...e5
+     */
+    private void addMove(PgnGame game) {
+        int start = 0;
+
+        while (start < token.length() && Character.isDigit(token.charAt(start))) start++;
+
+        if (start == token.length()) return;
+        if (token.charAt(start) != '.') start = 0;
+
+        while (start < token.length() && token.charAt(start) == '.') start++;
+
+        if (start < token.length()) game.addMove(token.substring(start));
+    }
+
+    private boolean isResult() {
+        return contentEquals("1-0") || contentEquals("0-1") || contentEquals("1/2-1/2") || contentEquals(PgnGame.UNKNOWN_RESULT);
+    }
+
+    private boolean contentEquals(String text) {
+        return token.length() == text.length() && token.indexOf(text) == 0;
+    }
+
+    private void readSymbol() throws IOException {
+        token.setLength(0);
+
+        for (int character = peek(); character != END && !isDelimiter(character); character = peek()) {
+            token.append((char) character);
+            position++;
+            isLineStart = false;
+        }
+    }
+
+    private void readUntil(char last) throws IOException {
+        token.setLength(0);
+
+        for (int character = read(); character != END && character != last; character = read()) {
+            token.append((char) character);
+        }
+    }
+
+    private void skipLine() throws IOException {
+        token.setLength(0);
+
+        for (int character = read(); character != END && character != '\n'; character = read()) {
+            token.append((char) character);
+        }
+
+        isLineStart = true;
+    }
+
+    private int skipWhitespace() throws IOException {
+        for (int character = peek(); character != END; character = peek()) {
+            if (!Character.isWhitespace(character)) return character;
+
+            isLineStart = character == '\n';
+            position++;
+        }
+
+        return END;
+    }
+
+    private boolean isDelimiter(int character) {
+        return Character.isWhitespace(character) || "{}()[];$\"".indexOf(character) >= 0;
+    }
+
+    private int read() throws IOException {
+        int character = peek();
+
+        if (character != END) {
+            position++;
+            isLineStart = character == '\n';
+        }
+
+        return character;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+
+            if (limit <= 0) {
+                limit = 0;
+                return END;
+            }
+        }
+
+        return buffer[position];
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,77 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Writes games in PGN with moves in standard algebraic notation and lines of at most 80 characters
+ */
+public class PgnWriter {
+    private static final int LINE_LENGTH = 80;
+
+    private PgnWriter() {
+    }
+
+    /**
+     * @param tags tags in the order they are written, the seven tag roster should come first
+     * @param startingBoard position the game started from, left unchanged
+     * @param moves played moves encoded by {@link Moves}
+     * @param result result of the game, e.g. 1-0 or *
+     * @return game in PGN ending with an empty line
+     */
+    public static String write(Map<String, String> tags, ChessBoard startingBoard, int[] moves, String result) {
+        StringBuilder pgn = new StringBuilder();
+
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            pgn.append('[').append(tag.getKey()).append(" \"").append(tag.getValue().replace("\\", "\\\\").replace("\"", "\\\"")).append("\"]\n");
+        }
+
+        pgn.append('\n');
+
+        ChessBoard board = new ChessBoard(startingBoard);
+        StringBuilder line = new StringBuilder();
+        int moveNumber = 1;
+
+        for (int i = 0; i < moves.length; i++) {
+            boolean isWhite = board.getColorToMove() == ChessBoard.ChessPiece.Color.WHITE;
+
+            String san = Moves.toSan(board, moves[i]);
+
+            //Move numbers are kept on the same line as the move
+            if (isWhite) appendWord(pgn, line, moveNumber + ". " + san);
+            else if (i == 0) appendWord(pgn, line, moveNumber + "... " + san);
+            else appendWord(pgn, line, san);
+            board.makeMove(moves[i]);
+
+            if (!isWhite) moveNumber++;
+        }
+
+        appendWord(pgn, line, result);
+
+        return pgn.append(line).append("\n\n").toString();
+    }
+
+    /**
+     * Appends the game to the file, creating the file and its directory if they do not exist
+     */
+    public static void append(Path path, Map<String, String> tags, ChessBoard startingBoard, int[] moves, String result) throws IOException {
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+
+        Files.writeString(path, write(tags, startingBoard, moves, result), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static void appendWord(StringBuilder pgn, StringBuilder line, String word) {
+        if (line.length() > 0 && line.length() + 1 + word.length() > LINE_LENGTH) {
+            pgn.append(line).append('\n');
+            line.setLength(0);
+        }
+
+        if (line.length() > 0) line.append(' ');
+
+        line.append(word);
+    }
+}
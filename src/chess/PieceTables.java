@@ -2,6 +2,7 @@ package chess;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.Arrays;
 import java.util.Scanner;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -10,51 +11,174 @@ import static chess.ChessBoard.ChessPiece.Color.BLACK;
 import static chess.ChessBoard.ChessPiece.Color.WHITE;
 
 public class PieceTables {
-    private static Integer[][] pawnTable;
-    private static Integer[][] knightTable;
-    private static Integer[][] bishopTable;
-    private static Integer[][] rookTable;
-    private static Integer[][] queenTable;
-    private static Integer[][] kingMidGameTable;
-    private static Integer[][] kingLateGameTable;
-
-    public static void initializePieceTables() {
-        pawnTable = parseInputToPieceTable("PieceTables/Pawn.txt");
-        knightTable = parseInputToPieceTable("PieceTables/Knight.txt");
-        bishopTable = parseInputToPieceTable("PieceTables/Bishop.txt");
-        rookTable = parseInputToPieceTable("PieceTables/Rook.txt");
-        queenTable = parseInputToPieceTable("PieceTables/Queen.txt");
-        kingMidGameTable = parseInputToPieceTable("PieceTables/KingMidGame.txt");
-        kingLateGameTable = parseInputToPieceTable("PieceTables/KingLateGame.txt");
+    static final String DIRECTORY = "PieceTables";
+    static final String PIECE_VALUES_FILE = "PieceValues.txt";
+    /**
+     * File names of the tables, a table's position in this array is its index used by {@link #tableIndex}
+     */
+    static final String[] TABLE_NAMES = {"Pawn", "Knight", "Bishop", "Rook", "Queen", "KingMidGame", "KingLateGame"};
+    /**
+     * Pieces whose value is read from the piece values file, in the order of its lines
+     */
+    static final ChessBoard.ChessPiece.Piece[] VALUED_PIECES = {
+        ChessBoard.ChessPiece.Piece.PAWN, ChessBoard.ChessPiece.Piece.KNIGHT, ChessBoard.ChessPiece.Piece.BISHOP,
+        ChessBoard.ChessPiece.Piece.ROOK, ChessBoard.ChessPiece.Piece.QUEEN
+    };
+    private static Integer[][][] tables;
+    private static int[] pieceValues;
+
+    /**
+     * Reads the tables from their files on the first call, later calls do nothing
+     */
+    public static synchronized void initializePieceTables() {
+        if (tables != null) return;
+
+        Integer[][][] loadedTables = new Integer[TABLE_NAMES.length][][];
+
+        for (int i = 0; i < TABLE_NAMES.length; i++) {
+            loadedTables[i] = parseInputToPieceTable(DIRECTORY + "/" + TABLE_NAMES[i] + ".txt");
+        }
+
+        pieceValues = parsePieceValues(DIRECTORY + "/" + PIECE_VALUES_FILE);
+        tables = loadedTables;
     }
 
-    public static int evaluateMovePositionChange(ChessBoard board, ChessBoard.Field.Move move) {
-        ChessBoard.ChessPiece chessPiece = move.getFrom().getChessPiece();
+    /**
+     * Material value of a piece, taken from the piece values file written by the {@link EvaluationTuner} when it exists
+     * @param piece piece to value
+     * @return value in centipawns
+     */
+    public static int getPieceValue(ChessBoard.ChessPiece.Piece piece) {
+        if (pieceValues == null) initializePieceTables();
 
-        return positionValue(move.getPosition(), chessPiece, board.isEndgame()) - positionValue(move.getFrom().getPosition(), chessPiece, board.isEndgame());
+        return pieceValues[piece.ordinal()];
     }
 
-    private static int positionValue(ChessBoard.Field.Position position, ChessBoard.ChessPiece chessPiece, boolean isEndgame) {
-        ChessBoard.ChessPiece.Color color = chessPiece.getColor();
-        int row = color == WHITE ? position.getRow() : 7 - position.getRow();
-        int column = color == BLACK ? position.getColumn() : 7 - position.getColumn();
+    /**
+     * @return hash of the piece values and all tables, changes whenever the tuner or an edit changes their files
+     */
+    static int hashValues() {
+        initializePieceTables();
+
+        return Arrays.hashCode(pieceValues) * 31 + Arrays.deepHashCode(tables);
+    }
+
+    /**
+     * Static evaluation without search: material and piece-square values of all pieces
+     * @param board position to evaluate
+     * @return evaluation from white perspective
+     */
+    public static int evaluate(ChessBoard board) {
+        initializePieceTables();
+
+        boolean isEndgame = board.isEndgame();
+        int evaluation = 0;
+
+        for (int square = 0; square < 64; square++) {
+            ChessBoard.ChessPiece.Color color = board.getColor(square);
+
+            if (color == ChessBoard.ChessPiece.Color.NONE) continue;
+
+            ChessBoard.ChessPiece.Piece piece = board.getPiece(square);
+            int value = pieceValues[piece.ordinal()] + positionValue(Moves.getRow(square), Moves.getColumn(square), color, piece, isEndgame);
+            evaluation += color == WHITE ? value : -value;
+        }
 
-        switch(chessPiece.getPiece()) {
+        return evaluation;
+    }
+
+    public static int evaluateMovePositionChange(ChessBoard board, int move) {
+        int from = Moves.getFrom(move);
+        int to = Moves.getTo(move);
+        ChessBoard.ChessPiece.Color color = board.getColor(from);
+        ChessBoard.ChessPiece.Piece piece = board.getPiece(from);
+
+        return positionValue(Moves.getRow(to), Moves.getColumn(to), color, piece, board.isEndgame()) - positionValue(Moves.getRow(from), Moves.getColumn(from), color, piece, board.isEndgame());
+    }
+
+    /**
+     * @return index of the table used for the piece in {@link #TABLE_NAMES}, -1 for no table
+     */
+    static int tableIndex(ChessBoard.ChessPiece.Piece piece, boolean isEndgame) {
+        switch(piece) {
             case PAWN:
-                return pawnTable[row][column];
-            case BISHOP:
-                return bishopTable[row][column];
-            case KING:
-                return isEndgame ? kingLateGameTable[row][column] : kingMidGameTable[row][column];
+                return 0;
             case KNIGHT:
-                return knightTable[row][column];
+                return 1;
+            case BISHOP:
+                return 2;
             case ROOK:
-                return rookTable[row][column];
+                return 3;
             case QUEEN:
-                return queenTable[row][column];
+                return 4;
+            case KING:
+                return isEndgame ? 6 : 5;
             default:
-                return 0;
+                return -1;
+        }
+    }
+
+    /**
+     * Tables are written from the moving side's point of view, so black reads them mirrored
+     * @return row * 8 + column of the table entry for a piece of the color on the board square
+     */
+    static int tableSquare(int boardRow, int boardColumn, ChessBoard.ChessPiece.Color color) {
+        int row = color == WHITE ? boardRow : 7 - boardRow;
+        int column = color == BLACK ? boardColumn : 7 - boardColumn;
+
+        return row * 8 + column;
+    }
+
+    /**
+     * @return copy of the table as row * 8 + column array
+     */
+    static int[] getTable(int tableIndex) {
+        initializePieceTables();
+
+        int[] table = new int[64];
+
+        for (int square = 0; square < 64; square++) {
+            table[square] = tables[tableIndex][square / 8][square % 8];
         }
+
+        return table;
+    }
+
+    private static int positionValue(int boardRow, int boardColumn, ChessBoard.ChessPiece.Color color, ChessBoard.ChessPiece.Piece piece, boolean isEndgame) {
+        int tableIndex = tableIndex(piece, isEndgame);
+
+        if (tableIndex < 0) return 0;
+
+        int square = tableSquare(boardRow, boardColumn, color);
+
+        return tables[tableIndex][square / 8][square % 8];
+    }
+
+    private static int[] parsePieceValues(String filepath) {
+        int[] values = new int[ChessBoard.ChessPiece.Piece.values().length];
+
+        for (ChessBoard.ChessPiece.Piece piece : ChessBoard.ChessPiece.Piece.values()) {
+            values[piece.ordinal()] = piece.getValue();
+        }
+
+        File file = new File(filepath);
+
+        if (!file.exists()) return values;
+
+        try(Scanner scanner = new Scanner(file)) {
+            for (ChessBoard.ChessPiece.Piece piece : VALUED_PIECES) {
+                String[] tokens = scanner.nextLine().split(",");
+                values[piece.ordinal()] = Integer.parseInt(tokens[1].trim());
+            }
+        } catch(FileNotFoundException | RuntimeException e) {
+            Logger.getLogger("global").log(Level.WARNING, filepath + " could not be read, using default piece values", e);
+
+            for (ChessBoard.ChessPiece.Piece piece : ChessBoard.ChessPiece.Piece.values()) {
+                values[piece.ordinal()] = piece.getValue();
+            }
+        }
+
+        return values;
     }
 
     private static Integer[][] parseInputToPieceTable(String filepath) {
@@ -0,0 +1,70 @@
+package chess;
+
+import java.util.Locale;
+
+/**
+ * Searches fixed positions with allocation profiling and fails when the search allocates more bytes per node than allowed,
+ * guarding the allocation-free search against regressions. Book, tablebase and result cache are not used,
+ * the hash tables are created before the search so that only allocations made while searching are counted.
+ * Searches are deterministic, every position is searched twice and the benchmark fails when the move or node count differ.
+ * Arguments: [depth] [maximum bytes per node], default 5 and {@link #DEFAULT_MAX_BYTES_PER_NODE}
+ */
+public class SearchBenchmark {
+    public static final double DEFAULT_MAX_BYTES_PER_NODE = 16;
+    private static final String[] POSITIONS = {
+        "r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"
+    };
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        double maxBytesPerNode = args.length > 1 ? Double.parseDouble(args[1]) : DEFAULT_MAX_BYTES_PER_NODE;
+
+        if (!AllocationProfiler.enable()) throw new IllegalStateException("Allocation profiling is not supported!");
+
+        long totalNodes = 0;
+        long totalBytes = 0;
+        long totalGcPauseTime = 0;
+
+        for (String fen : POSITIONS) {
+            SearchStatistics statistics = search(fen, depth);
+            SearchStatistics repeated = search(fen, depth);
+
+            if (!statistics.getSource().equals(SearchStatistics.SEARCH)) throw new IllegalStateException(fen + " was not searched!");
+
+            if (repeated.getBestMove() != statistics.getBestMove() || repeated.getNodes() != statistics.getNodes()) {
+                throw new IllegalStateException("Search of " + fen + " is not reproducible: " + Moves.toString(statistics.getBestMove()) + " in "
+                    + statistics.getNodes() + " nodes, then " + Moves.toString(repeated.getBestMove()) + " in " + repeated.getNodes() + " nodes");
+            }
+
+            totalNodes += statistics.getNodes();
+            totalBytes += statistics.getAllocatedBytes();
+            totalGcPauseTime += statistics.getGcPauseTime();
+
+            System.out.printf(Locale.ROOT, "%-75s %10d nodes %8d nps %8.1f bytes/node %4d ms GC%n", fen, statistics.getNodes(),
+                statistics.getNodesPerSecond(), statistics.getAllocatedBytesPerNode(), statistics.getGcPauseTime());
+        }
+
+        double bytesPerNode = totalNodes == 0 ? 0 : (double) totalBytes / totalNodes;
+
+        System.out.printf(Locale.ROOT, "total %d nodes, %.1f bytes/node, %d ms GC%n", totalNodes, bytesPerNode, totalGcPauseTime);
+
+        if (bytesPerNode > maxBytesPerNode) {
+            throw new IllegalStateException(String.format(Locale.ROOT, "Search allocated %.1f bytes per node, at most %.1f allowed", bytesPerNode, maxBytesPerNode));
+        }
+    }
+
+    private static SearchStatistics search(String fen, int depth) {
+        ChessBoard board = ChessBoard.fromFen(fen);
+        MiniMaxAdversary adversary = new MiniMaxAdversary(board.getColorToMove(), board, depth, true);
+        adversary.setDeterministic(true);
+        adversary.setSeed(0);
+        adversary.getPawnHashTable();
+        adversary.getEvaluationCache();
+        adversary.chooseMove();
+
+        return adversary.getLastStatistics();
+    }
+}
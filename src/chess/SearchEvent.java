@@ -0,0 +1,32 @@
+package chess;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning one {@link ComputerAdversary#chooseMove()} call
+ */
+@Name("chess.Search")
+@Label("Search")
+@Category({"Chess", "Engine"})
+@Description("Choice of a computer move from the start of the search until the move is returned")
+public class SearchEvent extends Event {
+    @Label("Source")
+    @Description("Where the move came from: search, book or tablebase")
+    String source;
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Chosen Move")
+    String chosenMove;
+
+    @Label("Evaluation")
+    int evaluation;
+}
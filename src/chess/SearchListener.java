@@ -0,0 +1,13 @@
+package chess;
+
+/**
+ * Receives search statistics while a move is being chosen
+ */
+public interface SearchListener {
+
+    /**
+     * Called from a search thread whenever a root move has been searched and once more after the search finished
+     * @param statistics statistics of the running search
+     */
+    void onUpdate(SearchStatistics statistics);
+}
@@ -0,0 +1,273 @@
+package chess;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded LRU cache of finished searches keyed by the position hash, which includes the side to move, and the search limits.
+ * The default cache is shared by all adversaries and persisted across restarts when the system property chess.searchCache names a file.
+ * Saved files start with the version of the evaluation their results were searched with, files of another version are discarded when loading.
+ */
+public class SearchResultCache {
+    public static final int DEFAULT_CAPACITY = 100_000;
+    private static final String FILE_PROPERTY = "chess.searchCache";
+    /**
+     * Classes whose code decides search results, together with their nested classes
+     */
+    private static final Class<?>[] SEARCH_CLASSES = {MiniMaxAdversary.class, ChessBoard.class, Moves.class, BoardEvaluation.class,
+        PieceTables.class, PawnStructure.class, PawnHashTable.class, TranspositionTable.class, EndgameTablebase.class};
+    private static long codeChecksum = -1;
+    private static SearchResultCache defaultCache;
+
+    private final int capacity;
+    private final Map<Key, Result> entries;
+    private long hits;
+    private long misses;
+
+    public SearchResultCache(int capacity) {
+        this.capacity = capacity;
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+                return size() > SearchResultCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Cache shared by all adversaries, loaded from and saved at exit to the file named by the chess.searchCache property if it is set
+     * @return the cache
+     */
+    public static synchronized SearchResultCache getDefault() {
+        if (defaultCache == null) {
+            defaultCache = new SearchResultCache(DEFAULT_CAPACITY);
+            String file = System.getProperty(FILE_PROPERTY);
+
+            if (file != null) {
+                Path path = Path.of(file);
+                SearchResultCache cache = defaultCache;
+
+                try {
+                    if (Files.exists(path)) cache.load(path);
+                } catch (IOException e) {
+                    Logger.getLogger("global").log(Level.WARNING, file + " could not be loaded!", e);
+                }
+
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        cache.save(path);
+                    } catch (IOException e) {
+                        Logger.getLogger("global").log(Level.WARNING, file + " could not be saved!", e);
+                    }
+                }));
+            }
+        }
+
+        return defaultCache;
+    }
+
+    /**
+     * @return cached result or null, counted as a hit or a miss
+     */
+    public synchronized Result get(long hash, int depth, long moveTime, boolean usesPieceTables) {
+        Result result = entries.get(new Key(hash, depth, moveTime, usesPieceTables));
+
+        if (result == null) misses++;
+        else hits++;
+
+        return result;
+    }
+
+    public synchronized void put(long hash, int depth, long moveTime, boolean usesPieceTables, Result result) {
+        entries.put(new Key(hash, depth, moveTime, usesPieceTables), result);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized double getHitRate() {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Version of the search and evaluation code and of the evaluation terms read from files, such as the piece values written by the {@link EvaluationTuner}
+     */
+    static long evaluationVersion() {
+        return codeChecksum() << 32 | (PieceTables.hashValues() * 31 + PawnStructure.hashTerms()) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * CRC32 of the class files of the search classes, so that any change of their code gives another version
+     */
+    private static synchronized long codeChecksum() {
+        if (codeChecksum < 0) {
+            CRC32 checksum = new CRC32();
+
+            for (Class<?> searchClass : SEARCH_CLASSES) {
+                updateChecksum(checksum, searchClass);
+            }
+
+            codeChecksum = checksum.getValue();
+        }
+
+        return codeChecksum;
+    }
+
+    private static void updateChecksum(CRC32 checksum, Class<?> searchClass) {
+        String classFile = searchClass.getName().substring(searchClass.getName().lastIndexOf('.') + 1) + ".class";
+
+        try (InputStream in = searchClass.getResourceAsStream(classFile)) {
+            if (in == null) throw new IOException(classFile + " not found");
+
+            checksum.update(in.readAllBytes());
+        } catch (IOException e) {
+            Logger.getLogger("global").log(Level.WARNING, "Code of " + searchClass.getName() + " could not be read for the search cache version!", e);
+            checksum.update(searchClass.getName().getBytes());
+        }
+
+        for (Class<?> nestedClass : searchClass.getDeclaredClasses()) {
+            updateChecksum(checksum, nestedClass);
+        }
+    }
+
+    /**
+     * Writes all entries from the least to the most recently used one, so that loading keeps their order
+     */
+    public synchronized void save(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeLong(evaluationVersion());
+            out.writeInt(entries.size());
+
+            for (Map.Entry<Key, Result> entry : entries.entrySet()) {
+                Key key = entry.getKey();
+                Result result = entry.getValue();
+
+                out.writeLong(key.hash);
+                out.writeInt(key.depth);
+                out.writeLong(key.moveTime);
+                out.writeBoolean(key.usesPieceTables);
+                out.writeInt(result.move);
+                out.writeInt(result.evaluation);
+                out.writeInt(result.depth);
+                out.writeInt(result.principalVariation.length);
+
+                for (int move : result.principalVariation) {
+                    out.writeInt(move);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the saved entries unless they were searched by another version of the evaluation
+     */
+    public synchronized void load(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readLong() != evaluationVersion()) {
+                Logger.getLogger("global").log(Level.INFO, path + " was saved by another evaluation version and is discarded!");
+                return;
+            }
+
+            int size = in.readInt();
+
+            for (int i = 0; i < size; i++) {
+                Key key = new Key(in.readLong(), in.readInt(), in.readLong(), in.readBoolean());
+                int move = in.readInt();
+                int evaluation = in.readInt();
+                int depth = in.readInt();
+                int[] principalVariation = new int[in.readInt()];
+
+                for (int j = 0; j < principalVariation.length; j++) {
+                    principalVariation[j] = in.readInt();
+                }
+
+                entries.put(key, new Result(move, evaluation, depth, principalVariation));
+            }
+        }
+    }
+
+    /**
+     * Best move of a finished search with its evaluation, completed depth and principal variation
+     */
+    public static class Result {
+        private final int move;
+        private final int evaluation;
+        private final int depth;
+        private final int[] principalVariation;
+
+        public Result(int move, int evaluation, int depth, int[] principalVariation) {
+            this.move = move;
+            this.evaluation = evaluation;
+            this.depth = depth;
+            this.principalVariation = principalVariation.clone();
+        }
+
+        public int getMove() {
+            return move;
+        }
+
+        public int getEvaluation() {
+            return evaluation;
+        }
+
+        public int getDepth() {
+            return depth;
+        }
+
+        public int[] getPrincipalVariation() {
+            return principalVariation.clone();
+        }
+    }
+
+    private static class Key {
+        private final long hash;
+        private final int depth;
+        private final long moveTime;
+        private final boolean usesPieceTables;
+
+        private Key(long hash, int depth, long moveTime, boolean usesPieceTables) {
+            this.hash = hash;
+            this.depth = depth;
+            this.moveTime = moveTime;
+            this.usesPieceTables = usesPieceTables;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+
+            Key otherKey = (Key) o;
+
+            return otherKey.hash == hash && otherKey.depth == depth && otherKey.moveTime == moveTime && otherKey.usesPieceTables == usesPieceTables;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash) * 31 + depth;
+        }
+    }
+}
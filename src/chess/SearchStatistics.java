@@ -0,0 +1,415 @@
+package chess;
+
+import java.util.Locale;
+
+/**
+ * Counters collected during a single {@link MiniMaxAdversary#chooseMove()} call.
+ * Every search thread only writes its own slots so counting needs no synchronization,
+ * values read while the search is still running may lag behind for other threads.
+ * Counters written while searching are kept together in one slot per thread, padded so that no two threads write the same cache line.
+ */
+public class SearchStatistics {
+    public static final String SEARCH = "search";
+    public static final String BOOK = "book";
+    public static final String TABLEBASE = "tablebase";
+    public static final String PONDER = "ponder";
+    public static final String CACHE = "cache";
+    private static final int NODES = 0;
+    private static final int INTERIOR_NODES = 1;
+    private static final int SEARCHED_MOVES = 2;
+    private static final int CUTOFFS = 3;
+    private static final int FIRST_MOVE_CUTOFFS = 4;
+    private static final int TRANSPOSITION_PROBES = 5;
+    private static final int TRANSPOSITION_HITS = 6;
+    private static final int EVALUATION_CACHE_PROBES = 7;
+    private static final int EVALUATION_CACHE_HITS = 8;
+    private static final int SELECTIVE_DEPTH = 9;
+    /**
+     * Longs per slot, two cache lines of 64 bytes because processors may prefetch lines in pairs
+     */
+    private static final int SLOT_SIZE = 16;
+
+    private final String source;
+    private final long startTime;
+    private final int threadCount;
+    /**
+     * Slot of thread i starts at (i + 1) * SLOT_SIZE, one empty slot before and after keeps other objects off their lines
+     */
+    private final long[] counters;
+    private final long[] threadTimes;
+    private final long[] allocatedBytes;
+    private volatile int depth;
+    private volatile long endTime;
+    private volatile int bestMove;
+    private volatile int evaluation;
+    private volatile int[] principalVariation = new int[0];
+    private volatile Line[] lines = new Line[0];
+    private volatile boolean isProfiled;
+    private volatile long callerAllocatedBytes;
+    private volatile long gcPauseTime;
+    private volatile long gcCount;
+
+    public SearchStatistics(String source, int threadCount) {
+        this.source = source;
+        startTime = System.nanoTime();
+        this.threadCount = threadCount;
+        counters = new long[(threadCount + 2) * SLOT_SIZE];
+        threadTimes = new long[threadCount];
+        allocatedBytes = new long[threadCount];
+    }
+
+    void countNode(int thread, int ply) {
+        int slot = slot(thread);
+        counters[slot + NODES]++;
+        if (ply > counters[slot + SELECTIVE_DEPTH]) counters[slot + SELECTIVE_DEPTH] = ply;
+    }
+
+    /**
+     * Records a node whose moves were searched
+     * @param searched number of moves searched before returning
+     * @param isCutoff whether the search of the node ended with a beta cutoff
+     */
+    void countInteriorNode(int thread, int searched, boolean isCutoff) {
+        int slot = slot(thread);
+        counters[slot + INTERIOR_NODES]++;
+        counters[slot + SEARCHED_MOVES] += searched;
+
+        if (isCutoff) {
+            counters[slot + CUTOFFS]++;
+            if (searched == 1) counters[slot + FIRST_MOVE_CUTOFFS]++;
+        }
+    }
+
+    void countTranspositionProbe(int thread, boolean isHit) {
+        int slot = slot(thread);
+        counters[slot + TRANSPOSITION_PROBES]++;
+        if (isHit) counters[slot + TRANSPOSITION_HITS]++;
+    }
+
+    void countEvaluationCacheProbe(int thread, boolean isHit) {
+        int slot = slot(thread);
+        counters[slot + EVALUATION_CACHE_PROBES]++;
+        if (isHit) counters[slot + EVALUATION_CACHE_HITS]++;
+    }
+
+    /**
+     * Records that iterative deepening completed another depth, so that the best moves so far can be read while searching
+     * @param depth depth searched by all root moves
+     * @param lines best root moves, best first, at least one
+     */
+    void completeIteration(int depth, Line[] lines) {
+        this.depth = depth;
+        this.lines = lines;
+        bestMove = lines[0].move;
+        evaluation = lines[0].evaluation;
+        principalVariation = lines[0].principalVariation;
+    }
+
+    /**
+     * @param bytes bytes allocated by a search thread while searching one iteration, measured by {@link AllocationProfiler}
+     */
+    void countAllocatedBytes(int thread, long bytes) {
+        allocatedBytes[thread] += bytes;
+    }
+
+    /**
+     * Records the profile of the whole move choice, called after {@link #finish} when allocation profiling is enabled
+     * @param callerAllocatedBytes bytes allocated by the thread choosing the move, besides those of the search threads
+     * @param gcPauseTime garbage collection pauses during the move choice in milliseconds
+     * @param gcCount number of those pauses
+     */
+    void finishProfile(long callerAllocatedBytes, long gcPauseTime, long gcCount) {
+        this.callerAllocatedBytes = callerAllocatedBytes;
+        this.gcPauseTime = gcPauseTime;
+        this.gcCount = gcCount;
+        isProfiled = true;
+    }
+
+    void finishThread(int thread) {
+        threadTimes[thread] = System.nanoTime() - startTime;
+    }
+
+    void finish(int bestMove, int evaluation, int[] principalVariation) {
+        this.bestMove = bestMove;
+        this.evaluation = evaluation;
+        this.principalVariation = principalVariation;
+        endTime = System.nanoTime();
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * @return depth of the last completed iteration
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getSelectiveDepth() {
+        long selectiveDepth = 0;
+
+        for (int thread = 0; thread < threadCount; thread++) {
+            selectiveDepth = Math.max(selectiveDepth, counters[slot(thread) + SELECTIVE_DEPTH]);
+        }
+
+        return (int) selectiveDepth;
+    }
+
+    public boolean isFinished() {
+        return endTime != 0;
+    }
+
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    public int getEvaluation() {
+        return evaluation;
+    }
+
+    /**
+     * @return expected line of play starting with the best move, empty for book and tablebase moves
+     */
+    public int[] getPrincipalVariation() {
+        return principalVariation.clone();
+    }
+
+    /**
+     * @return best root moves of the last completed iteration ordered from the best, more than one in multi-PV searches,
+     * empty for book and tablebase moves
+     */
+    public Line[] getLines() {
+        return lines.clone();
+    }
+
+    public long getNodes() {
+        return sum(NODES);
+    }
+
+    public long[] getThreadNodes() {
+        long[] threadNodes = new long[threadCount];
+
+        for (int thread = 0; thread < threadCount; thread++) {
+            threadNodes[thread] = counters[slot(thread) + NODES];
+        }
+
+        return threadNodes;
+    }
+
+    /**
+     * @return time each thread needed to finish its part of the search in nanoseconds, 0 for threads still searching
+     */
+    public long[] getThreadTimes() {
+        return threadTimes.clone();
+    }
+
+    /**
+     * @return time since the search started until it finished or until now in nanoseconds
+     */
+    public long getElapsedTime() {
+        return (isFinished() ? endTime : System.nanoTime()) - startTime;
+    }
+
+    public long getNodesPerSecond() {
+        long elapsedTime = getElapsedTime();
+
+        return elapsedTime == 0 ? 0 : getNodes() * 1_000_000_000L / elapsedTime;
+    }
+
+    /**
+     * @return average number of moves searched in nodes that were not leaves
+     */
+    public double getBranchingFactor() {
+        long interior = sum(INTERIOR_NODES);
+
+        return interior == 0 ? 0 : (double) sum(SEARCHED_MOVES) / interior;
+    }
+
+    /**
+     * @return share of beta cutoffs caused by the first searched move, measures move ordering quality
+     */
+    public double getFirstMoveCutoffRate() {
+        long allCutoffs = sum(CUTOFFS);
+
+        return allCutoffs == 0 ? 0 : (double) sum(FIRST_MOVE_CUTOFFS) / allCutoffs;
+    }
+
+    /**
+     * @return share of transposition table probes that found an entry of the same position
+     */
+    public double getTranspositionHitRate() {
+        long probes = sum(TRANSPOSITION_PROBES);
+
+        return probes == 0 ? 0 : (double) sum(TRANSPOSITION_HITS) / probes;
+    }
+
+    /**
+     * @return share of leaf evaluations taken from the evaluation cache
+     */
+    public double getEvaluationCacheHitRate() {
+        long probes = sum(EVALUATION_CACHE_PROBES);
+
+        return probes == 0 ? 0 : (double) sum(EVALUATION_CACHE_HITS) / probes;
+    }
+
+    /**
+     * @return whether allocations and garbage collections were measured, see {@link AllocationProfiler}
+     */
+    public boolean isProfiled() {
+        return isProfiled;
+    }
+
+    /**
+     * @return bytes allocated by the search threads and the thread choosing the move, 0 unless profiled
+     */
+    public long getAllocatedBytes() {
+        return sum(allocatedBytes) + callerAllocatedBytes;
+    }
+
+    public double getAllocatedBytesPerNode() {
+        long nodes = getNodes();
+
+        return nodes == 0 ? 0 : (double) getAllocatedBytes() / nodes;
+    }
+
+    /**
+     * @return time the search was paused by garbage collections in milliseconds, 0 unless profiled
+     */
+    public long getGcPauseTime() {
+        return gcPauseTime;
+    }
+
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    /**
+     * Single line JSON representation, suitable for appending to a JSON lines file
+     * @return statistics as JSON object
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{");
+
+        json.append("\"source\":\"").append(source).append('"');
+        json.append(",\"move\":\"").append(bestMove == Moves.NO_MOVE ? "" : Moves.toString(bestMove)).append('"');
+        json.append(",\"evaluation\":").append(evaluation);
+        json.append(",\"pv\":\"").append(toString(principalVariation)).append('"');
+        json.append(",\"depth\":").append(depth);
+        json.append(",\"seldepth\":").append(getSelectiveDepth());
+        json.append(",\"nodes\":").append(getNodes());
+        json.append(",\"nps\":").append(getNodesPerSecond());
+        json.append(",\"timeMs\":").append(getElapsedTime() / 1_000_000);
+        json.append(",\"branchingFactor\":").append(String.format(Locale.ROOT, "%.3f", getBranchingFactor()));
+        json.append(",\"firstMoveCutoffRate\":").append(String.format(Locale.ROOT, "%.3f", getFirstMoveCutoffRate()));
+        json.append(",\"ttHitRate\":").append(String.format(Locale.ROOT, "%.3f", getTranspositionHitRate()));
+        json.append(",\"evalCacheHitRate\":").append(String.format(Locale.ROOT, "%.3f", getEvaluationCacheHitRate()));
+        json.append(",\"threadNodes\":").append(toJsonArray(getThreadNodes(), 1));
+        json.append(",\"threadTimesMs\":").append(toJsonArray(threadTimes, 1_000_000));
+
+        Line[] lines = this.lines;
+
+        if (lines.length > 1) {
+            json.append(",\"lines\":[");
+
+            for (int i = 0; i < lines.length; i++) {
+                if (i > 0) json.append(',');
+                json.append("{\"move\":\"").append(Moves.toString(lines[i].move)).append('"');
+                json.append(",\"evaluation\":").append(lines[i].evaluation);
+                json.append(",\"pv\":\"").append(toString(lines[i].principalVariation)).append("\"}");
+            }
+
+            json.append(']');
+        }
+
+        if (isProfiled) {
+            json.append(",\"allocatedBytes\":").append(getAllocatedBytes());
+            json.append(",\"bytesPerNode\":").append(String.format(Locale.ROOT, "%.1f", getAllocatedBytesPerNode()));
+            json.append(",\"gcPauseMs\":").append(gcPauseTime);
+            json.append(",\"gcCount\":").append(gcCount);
+        }
+
+        return json.append('}').toString();
+    }
+
+    private static String toString(int[] principalVariation) {
+        StringBuilder line = new StringBuilder();
+
+        for (int move : principalVariation) {
+            if (line.length() > 0) line.append(' ');
+            line.append(Moves.toString(move));
+        }
+
+        return line.toString();
+    }
+
+    private static String toJsonArray(long[] values, long divisor) {
+        StringBuilder array = new StringBuilder("[");
+
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) array.append(',');
+            array.append(values[i] / divisor);
+        }
+
+        return array.append(']').toString();
+    }
+
+    private static int slot(int thread) {
+        return (thread + 1) * SLOT_SIZE;
+    }
+
+    /**
+     * @param counter offset of the counter in the slots
+     * @return counter summed over all threads
+     */
+    private long sum(int counter) {
+        long sum = 0;
+
+        for (int thread = 0; thread < threadCount; thread++) {
+            sum += counters[slot(thread) + counter];
+        }
+
+        return sum;
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+
+        for (long value : values) {
+            sum += value;
+        }
+
+        return sum;
+    }
+
+    /**
+     * Root move with its evaluation and the expected line of play starting with it
+     */
+    public static final class Line {
+        private final int move;
+        private final int evaluation;
+        private final int[] principalVariation;
+
+        Line(int move, int evaluation, int[] principalVariation) {
+            this.move = move;
+            this.evaluation = evaluation;
+            this.principalVariation = principalVariation;
+        }
+
+        public int getMove() {
+            return move;
+        }
+
+        /**
+         * @return evaluation from white perspective
+         */
+        public int getEvaluation() {
+            return evaluation;
+        }
+
+        public int[] getPrincipalVariation() {
+            return principalVariation.clone();
+        }
+    }
+}
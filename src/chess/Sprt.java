@@ -0,0 +1,121 @@
+package chess;
+
+import java.util.Locale;
+
+/**
+ * Sequential probability ratio test of the Elo difference between two players, based on the normal approximation of game scores.
+ * H0 is that the difference is elo0, H1 that it is elo1, the test stops once the log-likelihood ratio leaves its bounds.
+ */
+public class Sprt {
+    public static final int CONTINUE = 0;
+    public static final int ACCEPT_H0 = -1;
+    public static final int ACCEPT_H1 = 1;
+
+    private final double elo0;
+    private final double elo1;
+    private final double lowerBound;
+    private final double upperBound;
+    private int wins;
+    private int draws;
+    private int losses;
+
+    /**
+     * @param alpha probability of accepting H1 although H0 is true
+     * @param beta probability of accepting H0 although H1 is true
+     */
+    public Sprt(double elo0, double elo1, double alpha, double beta) {
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        lowerBound = Math.log(beta / (1 - alpha));
+        upperBound = Math.log((1 - beta) / alpha);
+    }
+
+    /**
+     * @param result 1 for a win, 0 for a draw and -1 for a loss of the first player
+     */
+    public synchronized void addResult(int result) {
+        if (result > 0) wins++;
+        else if (result < 0) losses++;
+        else draws++;
+    }
+
+    public synchronized int getGames() {
+        return wins + draws + losses;
+    }
+
+    /**
+     * @return one of CONTINUE, ACCEPT_H0 or ACCEPT_H1
+     */
+    public synchronized int getDecision() {
+        double logLikelihoodRatio = getLogLikelihoodRatio();
+
+        if (logLikelihoodRatio >= upperBound) return ACCEPT_H1;
+        if (logLikelihoodRatio <= lowerBound) return ACCEPT_H0;
+
+        return CONTINUE;
+    }
+
+    public synchronized double getLogLikelihoodRatio() {
+        int games = getGames();
+        double score = getScore();
+        double variance = getVariance();
+
+        if (games == 0 || variance == 0) return 0;
+
+        double score0 = expectedScore(elo0);
+        double score1 = expectedScore(elo1);
+
+        return games * (score1 - score0) * (2 * score - score0 - score1) / (2 * variance);
+    }
+
+    /**
+     * @return Elo difference estimated from the score of the first player
+     */
+    public synchronized double getElo() {
+        return elo(getScore());
+    }
+
+    /**
+     * @return half of the 95% confidence interval of the Elo difference
+     */
+    public synchronized double getEloMargin() {
+        int games = getGames();
+
+        if (games == 0) return 0;
+
+        double score = getScore();
+        double margin = 1.96 * Math.sqrt(getVariance() / games);
+
+        return (elo(score + margin) - elo(score - margin)) / 2;
+    }
+
+    public synchronized String toString() {
+        return String.format(Locale.ROOT, "Games %d: +%d =%d -%d, Elo %.1f +- %.1f, LLR %.2f [%.2f, %.2f]",
+            getGames(), wins, draws, losses, getElo(), getEloMargin(), getLogLikelihoodRatio(), lowerBound, upperBound);
+    }
+
+    private double getScore() {
+        int games = getGames();
+
+        return games == 0 ? 0.5 : (wins + 0.5 * draws) / games;
+    }
+
+    private double getVariance() {
+        int games = getGames();
+        double score = getScore();
+
+        if (games == 0) return 0;
+
+        return (wins * Math.pow(1 - score, 2) + draws * Math.pow(0.5 - score, 2) + losses * Math.pow(score, 2)) / games;
+    }
+
+    private static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    private static double elo(double score) {
+        double boundedScore = Math.min(Math.max(score, 1e-6), 1 - 1e-6);
+
+        return -400 * Math.log10(1 / boundedScore - 1);
+    }
+}
@@ -0,0 +1,320 @@
+package chess;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Generates the tables read by {@link EndgameTablebase} by retrograde analysis, e.g. {@code TablebaseGenerator KQvK KRvK}.
+ * Win/draw/loss is decided first: positions with a move into a lost position are won, positions whose moves all lead
+ * into won positions are lost, positions still undecided when nothing changes are draws. Distances to zeroing are then
+ * counted ply by ply from checkmates and from captures and pawn moves, which end the count.
+ * Captures and promotions take their result from the tables of the material they lead to, so those have to be generated first.
+ * The fifty-move rule is not considered, so no win is cursed. Moves within a table are kept in memory as position indices,
+ * four piece tables need a heap of several gigabytes.
+ */
+public class TablebaseGenerator {
+    private static final byte UNDECIDED = Byte.MAX_VALUE;
+    private static final byte INVALID = Byte.MIN_VALUE;
+    private static final int ZEROING = 1 << 30;
+
+    private final Path directory;
+    private final EndgameTablebase tablebase;
+
+    public TablebaseGenerator(Path directory) {
+        this.directory = directory;
+        this.tablebase = new EndgameTablebase(directory);
+    }
+
+    /**
+     * Arguments: signature... [--directory path]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: signature... [--directory path]");
+            return;
+        }
+
+        Path directory = Path.of("Tablebases");
+        List<String> signatures = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--directory")) directory = Path.of(args[++i]);
+            else signatures.add(args[i]);
+        }
+
+        Files.createDirectories(directory);
+        TablebaseGenerator generator = new TablebaseGenerator(directory);
+
+        for (String signature : signatures) {
+            int longestWin = generator.generate(signature);
+            System.out.println(signature + ": longest win with white to move is " + longestWin + " plies to zeroing or mate");
+        }
+    }
+
+    /**
+     * Generates both tables of the signature and writes them to the directory, later signatures may use them
+     * @param signature pieces of both sides like KQvK, white pieces first
+     * @return longest distance to zeroing of a won position with white to move
+     */
+    public int generate(String signature) throws IOException {
+        char[] pieces = layout(signature);
+        int shift = 6 * pieces.length;
+        int positionCount = 2 << shift;
+        byte[] results = new byte[positionCount];
+        byte[] distances = new byte[positionCount];
+        byte[] zeroingResults = new byte[positionCount];
+        int[] firstSuccessors = new int[positionCount + 1];
+        int[] successors = new int[1024];
+        int successorCount = 0;
+        int[] moves = new int[ChessBoard.MAX_MOVES];
+
+        tablebase.putTables(signature, ByteBuffer.wrap(results), ByteBuffer.wrap(distances));
+
+        for (int index = 0; index < positionCount; index++) {
+            firstSuccessors[index] = successorCount;
+            zeroingResults[index] = UNDECIDED;
+            ChessBoard board = decode(pieces, index, shift);
+
+            if (board == null) {
+                results[index] = INVALID;
+                continue;
+            }
+
+            if (tablebase.index(board) != index) throw new IllegalStateException("Index of " + board.toFen() + " does not match the table layout!");
+
+            int moveCount = board.generateMoves(moves);
+            results[index] = (byte) (moveCount > 0 ? UNDECIDED : board.isInCheck() ? EndgameTablebase.LOSS : EndgameTablebase.DRAW);
+
+            for (int i = 0; i < moveCount; i++) {
+                int move = moves[i];
+                boolean isPawnMove = board.getPiece(Moves.getFrom(move)) == ChessBoard.ChessPiece.Piece.PAWN;
+                boolean changesMaterial = board.getColor(Moves.getTo(move)) != ChessBoard.ChessPiece.Color.NONE
+                    || Moves.getSpecialMove(move) == ChessBoard.ChessPiece.SpecialMove.EN_PASSANT
+                    || Moves.getSpecialMove(move) == ChessBoard.ChessPiece.SpecialMove.PROMOTION;
+
+                board.makeMove(move);
+
+                if (!changesMaterial) {
+                    int successor = tablebase.index(board);
+
+                    if (successorCount == successors.length) successors = Arrays.copyOf(successors, 2 * successorCount);
+                    successors[successorCount++] = isPawnMove ? successor | ZEROING : successor;
+                } else {
+                    int wdl = tablebase.probeWdl(board);
+
+                    if (wdl == EndgameTablebase.UNKNOWN) throw new IllegalStateException("No table covers " + board.toFen() + "!");
+
+                    int result = Math.max(-wdl, zeroingResults[index] == UNDECIDED ? EndgameTablebase.LOSS : zeroingResults[index]);
+                    zeroingResults[index] = (byte) result;
+                }
+
+                board.unmakeMove(move);
+            }
+        }
+
+        firstSuccessors[positionCount] = successorCount;
+
+        decideResults(results, zeroingResults, firstSuccessors, successors);
+        int longestWin = countDistances(results, distances, zeroingResults, firstSuccessors, successors, positionCount / 2);
+
+        for (int index = 0; index < positionCount; index++) {
+            if (results[index] == INVALID) results[index] = EndgameTablebase.DRAW;
+        }
+
+        Files.write(directory.resolve(signature + EndgameTablebase.WDL_SUFFIX), results);
+        Files.write(directory.resolve(signature + EndgameTablebase.DTZ_SUFFIX), distances);
+
+        return longestWin;
+    }
+
+    /**
+     * Repeats until nothing changes: won when a move leads into a lost position, lost when all moves lead into won positions.
+     * Positions left undecided are draws
+     */
+    private void decideResults(byte[] results, byte[] zeroingResults, int[] firstSuccessors, int[] successors) {
+        for (int index = 0; index < results.length; index++) {
+            if (results[index] == UNDECIDED && zeroingResults[index] == EndgameTablebase.WIN) results[index] = EndgameTablebase.WIN;
+        }
+
+        boolean isChanged = true;
+
+        while (isChanged) {
+            isChanged = false;
+
+            for (int index = 0; index < results.length; index++) {
+                if (results[index] != UNDECIDED) continue;
+
+                boolean allWon = zeroingResults[index] == UNDECIDED || zeroingResults[index] == EndgameTablebase.LOSS;
+                boolean anyLost = false;
+
+                for (int i = firstSuccessors[index]; i < firstSuccessors[index + 1]; i++) {
+                    byte result = results[successors[i] & ~ZEROING];
+
+                    anyLost |= result == EndgameTablebase.LOSS;
+                    allWon &= result == EndgameTablebase.WIN;
+                }
+
+                if (anyLost || allWon) {
+                    results[index] = (byte) (anyLost ? EndgameTablebase.WIN : EndgameTablebase.LOSS);
+                    isChanged = true;
+                }
+            }
+        }
+
+        for (int index = 0; index < results.length; index++) {
+            if (results[index] == UNDECIDED) results[index] = EndgameTablebase.DRAW;
+        }
+    }
+
+    /**
+     * Counts plies to the next zeroing move or checkmate for won and lost positions. Distances found in a pass are stored
+     * only after it, so a position decided in pass n is exactly n plies from zeroing
+     * @return longest distance of a won position among the first positions
+     */
+    private int countDistances(byte[] results, byte[] distances, byte[] zeroingResults, int[] firstSuccessors, int[] successors, int firstCount) {
+        boolean[] isCounted = new boolean[results.length];
+        int[] found = new int[1024];
+        int longestWin = 0;
+
+        for (int index = 0; index < results.length; index++) {
+            isCounted[index] = results[index] != EndgameTablebase.WIN && results[index] != EndgameTablebase.LOSS
+                || firstSuccessors[index] == firstSuccessors[index + 1] && zeroingResults[index] == UNDECIDED;
+        }
+
+        for (int distance = 1; ; distance++) {
+            int foundCount = 0;
+
+            for (int index = 0; index < results.length; index++) {
+                if (isCounted[index]) continue;
+
+                boolean isWon = results[index] == EndgameTablebase.WIN;
+                boolean isFound = !isWon;
+
+                if (isWon && distance == 1) isFound = zeroingResults[index] == EndgameTablebase.WIN;
+
+                for (int i = firstSuccessors[index]; i < firstSuccessors[index + 1]; i++) {
+                    int successor = successors[i] & ~ZEROING;
+                    boolean isZeroing = successors[i] != successor;
+
+                    if (isWon) {
+                        isFound |= results[successor] == EndgameTablebase.LOSS
+                            && (isZeroing ? distance == 1 : isCounted[successor] && distances[successor] == distance - 1);
+                    } else if (!isZeroing) {
+                        isFound &= isCounted[successor];
+                    }
+                }
+
+                if (isFound) {
+                    if (foundCount == found.length) found = Arrays.copyOf(found, 2 * foundCount);
+                    found[foundCount++] = index;
+                }
+            }
+
+            if (foundCount == 0) break;
+            if (distance > 255) throw new IllegalStateException("Distance to zeroing does not fit into a byte!");
+
+            for (int i = 0; i < foundCount; i++) {
+                isCounted[found[i]] = true;
+                distances[found[i]] = (byte) distance;
+
+                if (found[i] < firstCount && results[found[i]] == EndgameTablebase.WIN) longestWin = distance;
+            }
+        }
+
+        for (int index = 0; index < results.length; index++) {
+            if (!isCounted[index]) throw new IllegalStateException("No distance to zeroing found for position " + index + "!");
+        }
+
+        return longestWin;
+    }
+
+    /**
+     * @return FEN symbols of the pieces in table order: white king, white pieces, black king, black pieces, each side in {@link EndgameTablebase#PIECE_ORDER}
+     */
+    private static char[] layout(String signature) {
+        String[] sides = signature.split("v");
+
+        if (sides.length != 2 || !sides[0].startsWith("K") || !sides[1].startsWith("K")) throw new IllegalArgumentException("Invalid signature " + signature + "!");
+
+        StringBuilder pieces = new StringBuilder();
+
+        for (int side = 0; side < 2; side++) {
+            char[] sidePieces = sides[side].substring(1).toCharArray();
+
+            for (char piece : sidePieces) {
+                if (EndgameTablebase.PIECE_ORDER.indexOf(piece) < 0) throw new IllegalArgumentException("Invalid signature " + signature + "!");
+            }
+
+            String symbols = "K" + new String(sortByPieceOrder(sidePieces));
+            pieces.append(side == 0 ? symbols : symbols.toLowerCase());
+        }
+
+        return pieces.toString().toCharArray();
+    }
+
+    private static char[] sortByPieceOrder(char[] pieces) {
+        StringBuilder sorted = new StringBuilder();
+
+        for (char piece : EndgameTablebase.PIECE_ORDER.toCharArray()) {
+            for (char sidePiece : pieces) {
+                if (sidePiece == piece) sorted.append(piece);
+            }
+        }
+
+        return sorted.toString().toCharArray();
+    }
+
+    /**
+     * Sets up the position of the index, see {@link EndgameTablebase}
+     * @return position or null if pieces share a square, pieces of a kind are not in ascending order, pawns stand on the first or last rank
+     * or the side not to move is in check
+     */
+    private static ChessBoard decode(char[] pieces, int index, int shift) {
+        char[] squares = new char[64];
+        int previousSquare = -1;
+
+        for (int i = 0; i < pieces.length; i++) {
+            int square = index >> 6 * i & 63;
+
+            if (squares[square] != 0) return null;
+            if (i > 0 && pieces[i] == pieces[i - 1] && square < previousSquare) return null;
+            if (Character.toUpperCase(pieces[i]) == 'P' && (square < 8 || square >= 56)) return null;
+
+            squares[square] = pieces[i];
+            previousSquare = square;
+        }
+
+        StringBuilder placement = new StringBuilder();
+
+        for (int rank = 7; rank >= 0; rank--) {
+            int emptySquares = 0;
+
+            for (int file = 0; file < 8; file++) {
+                char piece = squares[rank * 8 + file];
+
+                if (piece == 0) {
+                    emptySquares++;
+                    continue;
+                }
+
+                if (emptySquares > 0) placement.append(emptySquares);
+                placement.append(piece);
+                emptySquares = 0;
+            }
+
+            if (emptySquares > 0) placement.append(emptySquares);
+            if (rank > 0) placement.append('/');
+        }
+
+        boolean whiteToMove = index < 1 << shift;
+
+        if (ChessBoard.fromFen(placement + (whiteToMove ? " b - -" : " w - -")).isInCheck()) return null;
+
+        return ChessBoard.fromFen(placement + (whiteToMove ? " w - -" : " b - -"));
+    }
+}
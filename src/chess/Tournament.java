@@ -0,0 +1,275 @@
+package chess;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static chess.ChessBoard.ChessPiece.Color.WHITE;
+
+/**
+ * Headless self-play match between two adversary configurations, games are played in parallel until the SPRT decides or the game limit is reached.
+ * Every opening of the suite, by default the positions in Openings/Openings.epd, is played twice with colors swapped. Games are adjudicated as draws by threefold repetition,
+ * bare kings or the length limit and as wins once both sides agree on a decisive evaluation for several moves.
+ */
+public class Tournament {
+    private static final String OPENINGS_PATH = "Openings/Openings.epd";
+    private static final String STARTING_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq -";
+    private static final int TRANSPOSITION_TABLE_SIZE = 2;
+    private static final int WIN_ADJUDICATION_SCORE = 1000;
+    private static final int WIN_ADJUDICATION_MOVES = 8;
+
+    private final Player first;
+    private final Player second;
+    private final Sprt sprt;
+    private final int maxGames;
+    private final int concurrency;
+    private final int maxPlies;
+    private final List<String> openings;
+    private volatile boolean isDecided;
+
+    /**
+     * @param first tested configuration, results are reported from its perspective
+     * @param second reference configuration
+     * @param sprt test deciding when to stop
+     * @param maxGames number of games played when the test does not decide earlier
+     * @param concurrency number of games played at the same time
+     * @param maxPlies length after which a game is adjudicated as a draw
+     * @param openings positions in Forsyth-Edwards Notation the games start from
+     */
+    public Tournament(Player first, Player second, Sprt sprt, int maxGames, int concurrency, int maxPlies, List<String> openings) {
+        if (openings.isEmpty()) throw new IllegalArgumentException("No openings!");
+
+        this.first = first;
+        this.second = second;
+        this.sprt = sprt;
+        this.maxGames = maxGames;
+        this.concurrency = concurrency;
+        this.maxPlies = maxPlies;
+        this.openings = openings;
+    }
+
+    /**
+     * Runs the match with arguments:
+     * [--first depth[:notables]] [--second depth[:notables]] [--movetime ms] [--games n] [--concurrency n] [--maxplies n]
+     * [--openings file.epd] [--elo0 e] [--elo1 e] [--alpha a] [--beta b]
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Player first = new Player(4, true, 0);
+        Player second = new Player(3, true, 0);
+        long moveTime = 0;
+        int games = 1000;
+        int concurrency = Runtime.getRuntime().availableProcessors();
+        int maxPlies = 200;
+        List<String> openings = Files.exists(Path.of(OPENINGS_PATH)) ? readOpenings(Path.of(OPENINGS_PATH)) : List.of(STARTING_FEN);
+        double elo0 = 0;
+        double elo1 = 10;
+        double alpha = 0.05;
+        double beta = 0.05;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--first":
+                    first = Player.parse(args[++i]);
+                    break;
+                case "--second":
+                    second = Player.parse(args[++i]);
+                    break;
+                case "--movetime":
+                    moveTime = Long.parseLong(args[++i]);
+                    break;
+                case "--games":
+                    games = Integer.parseInt(args[++i]);
+                    break;
+                case "--concurrency":
+                    concurrency = Integer.parseInt(args[++i]);
+                    break;
+                case "--maxplies":
+                    maxPlies = Integer.parseInt(args[++i]);
+                    break;
+                case "--openings":
+                    openings = readOpenings(Path.of(args[++i]));
+                    break;
+                case "--elo0":
+                    elo0 = Double.parseDouble(args[++i]);
+                    break;
+                case "--elo1":
+                    elo1 = Double.parseDouble(args[++i]);
+                    break;
+                case "--alpha":
+                    alpha = Double.parseDouble(args[++i]);
+                    break;
+                case "--beta":
+                    beta = Double.parseDouble(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i] + "!");
+            }
+        }
+
+        Player timedFirst = new Player(first.depth, first.usesPieceTables, moveTime);
+        Player timedSecond = new Player(second.depth, second.usesPieceTables, moveTime);
+
+        new Tournament(timedFirst, timedSecond, new Sprt(elo0, elo1, alpha, beta), games, concurrency, maxPlies, openings).run();
+    }
+
+    /**
+     * Reads the first four fields of every EPD line
+     */
+    public static List<String> readOpenings(Path path) throws IOException {
+        List<String> openings = new ArrayList<>();
+
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.trim().split("\\s+");
+
+                if (fields.length >= 4) openings.add(fields[0] + " " + fields[1] + " " + fields[2] + " " + fields[3]);
+            }
+        }
+
+        return openings;
+    }
+
+    /**
+     * Plays the match, printing the standings after every game
+     * @return statistics of the finished match
+     */
+    public Sprt run() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, MiniMaxAdversary.daemonThreads("tournament"));
+        Semaphore runningGames = new Semaphore(concurrency);
+        long startTime = System.nanoTime();
+
+        for (int game = 0; game < maxGames && !isDecided; game++) {
+            String opening = openings.get(game / 2 % openings.size());
+            boolean firstIsWhite = game % 2 == 0;
+
+            runningGames.acquire();
+
+            if (isDecided) {
+                runningGames.release();
+                break;
+            }
+
+            executor.execute(() -> {
+                try {
+                    int result = firstIsWhite ? playGame(opening, first, second) : -playGame(opening, second, first);
+                    report(result, startTime);
+                } catch (RuntimeException e) {
+                    Logger.getLogger("global").log(Level.SEVERE, "Game failed!", e);
+                } finally {
+                    runningGames.release();
+                }
+            });
+        }
+
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+
+        int decision = sprt.getDecision();
+        System.out.println(decision == Sprt.ACCEPT_H1 ? "H1 accepted" : decision == Sprt.ACCEPT_H0 ? "H0 accepted" : "Inconclusive");
+
+        return sprt;
+    }
+
+    private synchronized void report(int result, long startTime) {
+        sprt.addResult(result);
+
+        double hours = (System.nanoTime() - startTime) / 3.6e12;
+
+        System.out.println(sprt + String.format(Locale.ROOT, ", %.0f games/h", sprt.getGames() / hours));
+
+        if (sprt.getDecision() != Sprt.CONTINUE) isDecided = true;
+    }
+
+    /**
+     * @return 1 if white wins, -1 if black wins, 0 for a draw
+     */
+    private int playGame(String opening, Player white, Player black) {
+        ChessBoard board = ChessBoard.fromFen(opening);
+        MiniMaxAdversary whiteAdversary = white.createAdversary(WHITE, board);
+        MiniMaxAdversary blackAdversary = black.createAdversary(ChessBoard.ChessPiece.Color.BLACK, board);
+        Map<Long, Integer> repetitions = new HashMap<>();
+        int decisiveMoves = 0;
+
+        for (int ply = 0; ply < maxPlies; ply++) {
+            boolean isWhiteToMove = board.getColorToMove() == WHITE;
+
+            if (board.cannotMove(board.getColorToMove())) {
+                if (!board.isInCheck()) return 0;
+
+                return isWhiteToMove ? -1 : 1;
+            }
+
+            if (board.getPieceCount() == 2 || repetitions.merge(board.getHash(), 1, Integer::sum) >= 3) return 0;
+
+            MiniMaxAdversary adversary = isWhiteToMove ? whiteAdversary : blackAdversary;
+            board.setAdversary(adversary);
+
+            int move = Moves.encode(adversary.chooseMove());
+            int evaluation = adversary.getLastStatistics().getEvaluation();
+
+            //Evaluations are from the white perspective, both sides have to agree on the winner
+            if (Math.abs(evaluation) >= WIN_ADJUDICATION_SCORE && adversary.getLastStatistics().getSource().equals(SearchStatistics.SEARCH)) {
+                decisiveMoves = decisiveMoves != 0 && Integer.signum(decisiveMoves) == Integer.signum(evaluation) ? decisiveMoves + Integer.signum(evaluation) : Integer.signum(evaluation);
+            } else {
+                decisiveMoves = 0;
+            }
+
+            if (Math.abs(decisiveMoves) >= 2 * WIN_ADJUDICATION_MOVES) return Integer.signum(decisiveMoves);
+
+            board.makeMove(move);
+        }
+
+        return 0;
+    }
+
+    /**
+     * Adversary configuration taking part in the match
+     */
+    public static class Player {
+        private final int depth;
+        private final boolean usesPieceTables;
+        private final long moveTime;
+
+        public Player(int depth, boolean usesPieceTables, long moveTime) {
+            this.depth = depth;
+            this.usesPieceTables = usesPieceTables;
+            this.moveTime = moveTime;
+        }
+
+        /**
+         * @param description depth optionally followed by ":notables" for not using piece tables, e.g. 4 or 3:notables
+         */
+        public static Player parse(String description) {
+            String[] parts = description.split(":");
+
+            return new Player(Integer.parseInt(parts[0]), parts.length < 2 || !parts[1].equals("notables"), 0);
+        }
+
+        /**
+         * Every game gets fresh adversaries with own small transposition tables and without the result cache, so that games stay independent
+         */
+        private MiniMaxAdversary createAdversary(ChessBoard.ChessPiece.Color color, ChessBoard board) {
+            MiniMaxAdversary adversary = new MiniMaxAdversary(color, board, depth, usesPieceTables);
+            adversary.setTranspositionTable(new TranspositionTable(TRANSPOSITION_TABLE_SIZE));
+            adversary.setResultCache(null);
+            adversary.setMoveTime(moveTime);
+
+            return adversary;
+        }
+    }
+}
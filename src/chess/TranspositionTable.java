@@ -0,0 +1,114 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * Transposition table shared by all search threads of an adversary.
+ * Every entry takes two longs: the key xor-ed with the data and the data itself,
+ * so an entry torn by concurrent writes fails the key check instead of returning wrong data.
+ */
+public class TranspositionTable {
+    public static final int EXACT = 0;
+    public static final int LOWER_BOUND = 1;
+    public static final int UPPER_BOUND = 2;
+    public static final long NO_ENTRY = 0;
+    public static final int DEFAULT_SIZE_IN_MEGABYTES = 16;
+    private static final int ENTRY_SIZE = 16;
+    private static final int MOVE_MASK = 0x3FFFF;
+    private static final int DEPTH_SHIFT = 18;
+    private static final int DEPTH_MASK = 0x7F;
+    private static final int BOUND_SHIFT = 25;
+    private static final int BOUND_MASK = 0x3;
+    private static final int SCORE_SHIFT = 32;
+
+    private volatile long[] entries;
+
+    public TranspositionTable(int sizeInMegabytes) {
+        allocate(sizeInMegabytes);
+    }
+
+    /**
+     * Replaces the table with an empty one of specified size
+     * @param sizeInMegabytes new size, rounded down to a power of two number of entries
+     */
+    public synchronized void resize(int sizeInMegabytes) {
+        TranspositionTableEvent event = new TranspositionTableEvent();
+        event.begin();
+
+        allocate(sizeInMegabytes);
+
+        if (event.shouldCommit()) {
+            event.action = "resize";
+            event.entries = entries.length / 2;
+            event.commit();
+        }
+    }
+
+    public synchronized void clear() {
+        TranspositionTableEvent event = new TranspositionTableEvent();
+        event.begin();
+
+        Arrays.fill(entries, 0);
+
+        if (event.shouldCommit()) {
+            event.action = "clear";
+            event.entries = entries.length / 2;
+            event.commit();
+        }
+    }
+
+    private void allocate(int sizeInMegabytes) {
+        int entryCount = Integer.highestOneBit((int) Math.min(1L << 30, Math.max(1L, (long) sizeInMegabytes * 1024 * 1024 / ENTRY_SIZE)));
+
+        entries = new long[2 * entryCount];
+    }
+
+    /**
+     * @param key hash of the position
+     * @return data stored for the position or NO_ENTRY
+     */
+    public long probe(long key) {
+        long[] table = entries;
+        int index = index(table, key);
+        long data = table[index + 1];
+
+        return (table[index] ^ data) == key ? data : NO_ENTRY;
+    }
+
+    /**
+     * Stores search result of a position, an entry of another position is always replaced,
+     * an entry of the same position only by a result of at least the same depth
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        long[] table = entries;
+        int index = index(table, key);
+        long storedData = table[index + 1];
+
+        if ((table[index] ^ storedData) == key && getDepth(storedData) > depth) return;
+
+        long data = (long) score << SCORE_SHIFT | (long) bound << BOUND_SHIFT | (long) depth << DEPTH_SHIFT | move;
+
+        table[index] = key ^ data;
+        table[index + 1] = data;
+    }
+
+    private static int index(long[] table, long key) {
+        return 2 * (int) (key & ((table.length >> 1) - 1));
+    }
+
+    public static int getMove(long data) {
+        return (int) data & MOVE_MASK;
+    }
+
+    public static int getDepth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & DEPTH_MASK;
+    }
+
+    public static int getBound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & BOUND_MASK;
+    }
+
+    public static int getScore(long data) {
+        return (int) (data >> SCORE_SHIFT);
+    }
+}
@@ -0,0 +1,22 @@
+package chess;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning a resize or clear of a {@link TranspositionTable}
+ */
+@Name("chess.TranspositionTable")
+@Label("Transposition Table")
+@Category({"Chess", "Engine"})
+@Description("Transposition table being resized or cleared")
+public class TranspositionTableEvent extends Event {
+    @Label("Action")
+    String action;
+
+    @Label("Entries")
+    long entries;
+}